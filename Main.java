@@ -1,19 +1,21 @@
 import parselang.interpreter.Interpreter;
 import parselang.languages.ParseLangV1;
+import parselang.parser.BaseGrammar;
+import parselang.parser.MappedSource;
 import parselang.parser.ParseResult;
 import parselang.parser.ParseRuleStorage;
-import parselang.parser.data.NonTerminal;
 import parselang.parser.parsers.Parser;
 import parselang.parser.parsers.RecursiveParser;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 
 import static parselang.parser.ParseRuleStorage.nonTerm;
 
 public class Main {
 
+    private static final BaseGrammar PARSE_LANG_V1 = new BaseGrammar(new ParseLangV1(), nonTerm("HighLevel"));
+
     /**
     * Run your favourite ParseLang programs here!
     **/
@@ -27,12 +29,11 @@ public class Main {
     }
 
     private static void runDemo(String path) throws IOException {
-        String program = new String(Files.readAllBytes(Paths.get(path)));
+        MappedSource program = MappedSource.open(Paths.get(path));
         System.out.println("Interpreting program \"" + Paths.get(path).getFileName().toFile().getName() + "\"...");
         Parser parser = new RecursiveParser();
         parser.setVerbosity(0);
-        ParseRuleStorage storage = new ParseRuleStorage();
-        storage.prepare(new ParseLangV1(), new NonTerminal("HighLevel", false));
+        ParseRuleStorage storage = PARSE_LANG_V1.newStorage();
         try {
             ParseResult result = parser.readFile(program, storage, nonTerm("HighLevel"));
             System.out.println("> " + new Interpreter().run(result.getTree()));
@@ -0,0 +1,81 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.parser.data.*;
+import parselang.parser.rulealgorithms.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.nonTerm;
+
+/**
+ * Compares the naive FIRST and FOLLOW calculators with the SCC-ordered ones on ParseLangV1 and on synthetic extensions
+ * of it. The setup checks that both produce the same sets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    @Param({"0", "1000", "2000", "4000", "8000"})
+    public int extraNonTerminals;
+
+    private final Map<NonTerminal, List<ParseRule>> rules = new HashMap<>();
+    private final Set<Terminal> terminals = new HashSet<>();
+    private final Set<NonTerminal> nonTerminals = new HashSet<>();
+    private final NonTerminal topLevel = nonTerm("HighLevel");
+    private final FirstCalculator naiveFirst = new NaiveFirstCalculator();
+    private final FirstCalculator sccFirst = new SCCFirstCalculator();
+    private final FollowCalculator naiveFollow = new NaiveFollowCalculator();
+    private final FollowCalculator sccFollow = new SCCFollowCalculator();
+    private Map<Node, CharSet> first;
+
+    @Setup
+    public void setup() {
+        for (ParseRule original : new SyntheticLanguage(extraNonTerminals).getRules()) {
+            for (ParseRule rule : original.convertStarNodes()) {
+                rules.computeIfAbsent(rule.getLHS(), nonTerminal -> new LinkedList<>()).add(rule);
+                nonTerminals.add(rule.getLHS());
+                for (Node node : rule.getRHS()) {
+                    while (node instanceof BoundNode) {
+                        node = ((BoundNode) node).getContent();
+                    }
+                    if (node instanceof Terminal) {
+                        terminals.add((Terminal) node);
+                    } else if (node instanceof NonTerminal) {
+                        nonTerminals.add((NonTerminal) node);
+                        rules.computeIfAbsent((NonTerminal) node, nonTerminal -> new LinkedList<>());
+                    }
+                }
+            }
+        }
+        first = naiveFirst.computeFirst(rules, terminals, nonTerminals);
+        if (!first.equals(sccFirst()) || !naiveFollow().equals(sccFollow())) {
+            throw new IllegalStateException("The naive and SCC-ordered calculators disagree on " + extraNonTerminals + " extra nonterminals");
+        }
+    }
+
+    @Benchmark
+    public Map<Node, CharSet> naiveFirst() {
+        return naiveFirst.computeFirst(rules, terminals, nonTerminals);
+    }
+
+    @Benchmark
+    public Map<Node, CharSet> sccFirst() {
+        return sccFirst.computeFirst(rules, terminals, nonTerminals);
+    }
+
+    @Benchmark
+    public Map<Node, CharSet> naiveFollow() {
+        return naiveFollow.computeFollow(topLevel, first, rules, nonTerminals);
+    }
+
+    @Benchmark
+    public Map<Node, CharSet> sccFollow() {
+        return sccFollow.computeFollow(topLevel, first, rules, nonTerminals);
+    }
+}
@@ -0,0 +1,40 @@
+package parselang.jmh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates the example programs. The directory can be set with the system property {@code parselang.examples}; otherwise
+ * it is looked up relative to the working directory, so the benchmarks can be started from the repository root or from
+ * the jmh directory.
+ */
+final class Examples {
+
+    private Examples() {
+    }
+
+    /**
+     * Reads an example program
+     * @param name name of the program, without the .plang extension
+     * @return the program text
+     */
+    static String read(String name) {
+        try {
+            return new String(Files.readAllBytes(directory().resolve(name + ".plang")));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path directory() {
+        String configured = System.getProperty("parselang.examples");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path local = Paths.get("examples");
+        return Files.isDirectory(local) ? local : Paths.get("..", "examples");
+    }
+}
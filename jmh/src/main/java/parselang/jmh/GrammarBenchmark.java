@@ -0,0 +1,78 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.parser.BaseGrammar;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.Direction;
+import parselang.parser.data.ParseRule;
+
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.*;
+
+/**
+ * Cost of computing the grammar tables of ParseLangV1 from scratch, compared to starting a program on a prepared base
+ * grammar and to the incremental updates that parsing a program triggers. The language is extended with synthetic
+ * nonterminals that all use ParameterName, whose rules are added and removed for every parameter, but whose FIRST and
+ * FOLLOW sets do not depend on it. The time per mutation should stay flat while the time of preparing the grammar grows
+ * with it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrammarBenchmark {
+
+    private static final ParseRule INHERITANCE_RULE = new ParseRule("SimpleExpression").addRhs(nonTerm("BenchmarkExpression"));
+    private static final ParseRule DECLARED_RULE = new ParseRule("BenchmarkExpression").addRhs(term("bench"), ws(), nonTerm("Expression"));
+
+    @Param({"0", "250", "1000", "2000"})
+    public int extraNonTerminals;
+
+    private SyntheticLanguage language;
+    private BaseGrammar base;
+    private ParseRuleStorage storage;
+
+    @Setup
+    public void setup() {
+        language = new SyntheticLanguage(extraNonTerminals);
+        base = new BaseGrammar(language, nonTerm("HighLevel"));
+        storage = base.newStorage();
+    }
+
+    @Benchmark
+    public ParseRuleStorage prepare() {
+        ParseRuleStorage prepared = new ParseRuleStorage();
+        prepared.prepare(language, nonTerm("HighLevel"));
+        return prepared;
+    }
+
+    @Benchmark
+    public ParseRuleStorage newStorage() {
+        return base.newStorage();
+    }
+
+    /**
+     * Binds a parameter and clears it again, as parsing a declaration with a single parameter does
+     */
+    @Benchmark
+    public long addAndRemoveParameter() {
+        storage.addParameter("benchmarkParameter");
+        storage.removeParameters();
+        return storage.getVersion();
+    }
+
+    /**
+     * Adds the rules of a declaration and rolls them back, as a declaration that fails to parse does
+     */
+    @Benchmark
+    public long declareAndRollBack() {
+        int snapshot = storage.snapshot();
+        storage.addCustomRules(INHERITANCE_RULE, Direction.LEFT, DECLARED_RULE);
+        long version = storage.getVersion();
+        storage.rollback(snapshot);
+        return version;
+    }
+}
@@ -0,0 +1,45 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.interpreter.Interpreter;
+import parselang.interpreter.data.PLData;
+import parselang.languages.ParseLangV1;
+import parselang.parser.BaseGrammar;
+import parselang.parser.data.AST;
+import parselang.parser.exceptions.ParseErrorException;
+import parselang.parser.parsers.Parser;
+import parselang.parser.parsers.RecursiveParser;
+
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.nonTerm;
+
+/**
+ * Time to interpret an example program that was parsed beforehand
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class InterpreterBenchmark {
+
+    @Param({"gcd", "forloop", "concat"})
+    public String program;
+
+    private AST tree;
+
+    @Setup
+    public void setup() throws ParseErrorException {
+        Parser parser = new RecursiveParser();
+        parser.setVerbosity(0);
+        BaseGrammar base = new BaseGrammar(new ParseLangV1(), nonTerm("HighLevel"));
+        tree = parser.readFile(Examples.read(program), base.newStorage(), nonTerm("HighLevel")).getTree();
+    }
+
+    @Benchmark
+    public PLData run() {
+        return new Interpreter().run(tree);
+    }
+}
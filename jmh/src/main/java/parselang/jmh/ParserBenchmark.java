@@ -0,0 +1,45 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.languages.ParseLangV1;
+import parselang.parser.BaseGrammar;
+import parselang.parser.ParseResult;
+import parselang.parser.exceptions.ParseErrorException;
+import parselang.parser.parsers.Parser;
+import parselang.parser.parsers.RecursiveParser;
+
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.nonTerm;
+
+/**
+ * Time to parse each example program with a fresh parse rule storage on top of a prepared base grammar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class ParserBenchmark {
+
+    @Param({"concat", "doublequotes", "forloop", "gcd", "madness", "playground"})
+    public String program;
+
+    private String source;
+    private BaseGrammar base;
+    private Parser parser;
+
+    @Setup
+    public void setup() {
+        source = Examples.read(program);
+        base = new BaseGrammar(new ParseLangV1(), nonTerm("HighLevel"));
+        parser = new RecursiveParser();
+        parser.setVerbosity(0);
+    }
+
+    @Benchmark
+    public ParseResult readFile() throws ParseErrorException {
+        return parser.readFile(source, base.newStorage(), nonTerm("HighLevel"));
+    }
+}
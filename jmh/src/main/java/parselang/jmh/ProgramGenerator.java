@@ -0,0 +1,162 @@
+package parselang.jmh;
+
+/**
+ * Generates valid ParseLang programs of a given size, to measure how parsing and interpreting scale with the input.
+ * Every workload stresses one dimension of a program; {@link Workload#MIXED} combines all of them.
+ */
+public final class ProgramGenerator {
+
+    /**
+     * Kinds of programs that can be generated. The size means something different for each of them.
+     */
+    public enum Workload {
+        /**
+         * The given number of declarations, each of which is used once
+         */
+        DECLARATIONS,
+        /**
+         * An arithmetic expression with brackets nested to the given depth
+         */
+        NESTING,
+        /**
+         * A string literal and a number literal of the given length
+         */
+        LITERALS,
+        /**
+         * A single declaration with the given number of parameters
+         */
+        PARAMETERS,
+        /**
+         * A recursive declaration that calls itself the given number of times, in the way gcd does
+         */
+        RECURSION,
+        /**
+         * All of the above, each with the given size
+         */
+        MIXED
+    }
+
+    private ProgramGenerator() {
+    }
+
+    /**
+     * Generates a program
+     * @param workload kind of program to generate
+     * @param size size of the program, as described by the workload
+     * @return the program text
+     */
+    public static String generate(Workload workload, int size) {
+        StringBuilder sb = new StringBuilder();
+        switch (workload) {
+            case DECLARATIONS:
+                declarations(sb, size);
+                sb.append(declarationsUse(size));
+                break;
+            case NESTING:
+                sb.append(nesting(size));
+                break;
+            case LITERALS:
+                sb.append(literals(size));
+                break;
+            case PARAMETERS:
+                parameters(sb, size);
+                sb.append(parametersUse(size));
+                break;
+            case RECURSION:
+                recursion(sb);
+                sb.append(recursionUse(size));
+                break;
+            case MIXED:
+                declarations(sb, size);
+                parameters(sb, size);
+                recursion(sb);
+                sb.append("[").append(declarationsUse(size)).append(", ").append(nesting(size)).append(", ").append(literals(size))
+                        .append(", ").append(parametersUse(size)).append(", ").append(recursionUse(size)).append("]");
+                break;
+        }
+        return sb.append("\n").toString();
+    }
+
+    /**
+     * Declarations that each add a keyword with a distinct number. The keywords end in a space, so that no keyword is a
+     * prefix of another one.
+     */
+    private static void declarations(StringBuilder sb, int size) {
+        for (int i = 0; i < size; i++) {
+            sb.append("Generated").append(i).append(" < SimpleExpression = 'generated").append(i).append(" ' Expression a {\n")
+                    .append("    a + ").append(i).append("\n")
+                    .append("}\n\n");
+        }
+    }
+
+    private static String declarationsUse(int size) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            sb.append(i == 0 ? "" : ", ").append("generated").append(i).append(" 1");
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * An expression with nested brackets. Operators directly follow closing brackets, as a bracketed expression does not
+     * end in whitespace.
+     */
+    private static String nesting(int depth) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(".repeat(depth)).append("1");
+        for (int i = 0; i < depth; i++) {
+            sb.append(i % 2 == 0 ? "+" : "*").append(i % 9 + 1).append(")");
+        }
+        return sb.toString();
+    }
+
+    private static String literals(int length) {
+        StringBuilder sb = new StringBuilder("['");
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        sb.append("', ");
+        for (int i = 0; i < length; i++) {
+            sb.append(i % 9 + 1);
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * A declaration with many parameters. The parameter names all have the same length, so that no name is a prefix of
+     * another one.
+     */
+    private static void parameters(StringBuilder sb, int count) {
+        sb.append("ManyParameters < SimpleExpression = 'many' WhiteSpace* '(' WhiteSpace*");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "" : " ',' WhiteSpace*").append(" Expression ").append(parameterName(i)).append(" WhiteSpace*");
+        }
+        sb.append(" ')' {\n    0");
+        for (int i = 0; i < count; i++) {
+            sb.append(" + ").append(parameterName(i));
+        }
+        sb.append("\n}\n\n");
+    }
+
+    private static String parametersUse(int count) {
+        StringBuilder sb = new StringBuilder("many(");
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "" : ", ").append(i);
+        }
+        return sb.append(")").toString();
+    }
+
+    private static String parameterName(int index) {
+        return "p" + (char) ('a' + index / 26 / 26 % 26) + (char) ('a' + index / 26 % 26) + (char) ('a' + index % 26);
+    }
+
+    private static void recursion(StringBuilder sb) {
+        sb.append("CountDown < SimpleExpression = 'countdown' WhiteSpace* '(' WhiteSpace* Expression n WhiteSpace* ')' {\n")
+                .append("    ~if(n == 0, 0, 1 + countdown(n - 1))\n")
+                .append("}\n\n");
+    }
+
+    private static String recursionUse(int depth) {
+        return "countdown(" + depth + ")";
+    }
+}
@@ -0,0 +1,60 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.interpreter.Interpreter;
+import parselang.interpreter.data.PLData;
+import parselang.jmh.ProgramGenerator.Workload;
+import parselang.languages.ParseLangV1;
+import parselang.parser.BaseGrammar;
+import parselang.parser.ParseResult;
+import parselang.parser.data.AST;
+import parselang.parser.exceptions.ParseErrorException;
+import parselang.parser.parsers.Parser;
+import parselang.parser.parsers.RecursiveParser;
+
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.nonTerm;
+
+/**
+ * Time to parse and to interpret generated programs of growing size. Together with -prof gc, this gives the time and
+ * memory curves of every workload against the size of the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss512m")
+public class ScalingBenchmark {
+
+    @Param({"DECLARATIONS", "NESTING", "LITERALS", "PARAMETERS", "RECURSION", "MIXED"})
+    public Workload workload;
+
+    @Param({"16", "64", "256"})
+    public int size;
+
+    private String program;
+    private BaseGrammar base;
+    private Parser parser;
+    private AST tree;
+
+    @Setup
+    public void setup() throws ParseErrorException {
+        program = ProgramGenerator.generate(workload, size);
+        base = new BaseGrammar(new ParseLangV1(), nonTerm("HighLevel"));
+        parser = new RecursiveParser();
+        parser.setVerbosity(0);
+        tree = parser.readFile(program, base.newStorage(), nonTerm("HighLevel")).getTree();
+    }
+
+    @Benchmark
+    public ParseResult parse() throws ParseErrorException {
+        return parser.readFile(program, base.newStorage(), nonTerm("HighLevel"));
+    }
+
+    @Benchmark
+    public PLData interpret() {
+        return new Interpreter().run(tree);
+    }
+}
@@ -0,0 +1,46 @@
+package parselang.jmh;
+
+import parselang.languages.Language;
+import parselang.languages.ParseLangV1;
+import parselang.parser.data.NonTerminal;
+import parselang.parser.data.ParseRule;
+
+import java.util.List;
+
+import static parselang.parser.ParseRuleStorage.*;
+
+/**
+ * ParseLangV1 extended with chains of keyword nonterminals that are reachable from the toplevel. Every one of them can
+ * also refer to a parameter after a keyword, so that they all use ParameterName without it affecting their FIRST sets.
+ * Without extra nonterminals, it is ParseLangV1 itself.
+ */
+class SyntheticLanguage implements Language {
+
+    private final int extraNonTerminals;
+
+    /**
+     * Creates a new synthetic language
+     * @param extraNonTerminals number of nonterminals to add to ParseLangV1
+     */
+    SyntheticLanguage(int extraNonTerminals) {
+        this.extraNonTerminals = extraNonTerminals;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<ParseRule> getRules() {
+        List<ParseRule> rules = new ParseLangV1().getRules();
+        if (extraNonTerminals > 0) {
+            rules.add(new ParseRule("SimpleExpression").addRhs(nonTerm("Synthetic0")));
+        }
+        for (int i = 0; i < extraNonTerminals; i++) {
+            NonTerminal next = i + 1 < extraNonTerminals ? nonTerm("Synthetic" + (i + 1)) : nonTerm("NumberLiteral");
+            rules.add(new ParseRule("Synthetic" + i).addRhs(term("#" + i), ws(), next));
+            rules.add(new ParseRule("Synthetic" + i).addRhs(term("@"), star(nonTerm("UpperOrLowerCase")), term("@")));
+            rules.add(new ParseRule("Synthetic" + i).addRhs(term("$" + i), nonTerm("ParameterName")));
+        }
+        return rules;
+    }
+}
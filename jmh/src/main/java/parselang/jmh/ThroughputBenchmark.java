@@ -0,0 +1,57 @@
+package parselang.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import parselang.languages.ParseLangV1;
+import parselang.parser.BaseGrammar;
+import parselang.parser.exceptions.ParseErrorException;
+import parselang.parser.parsers.Parser;
+import parselang.parser.parsers.RecursiveParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static parselang.parser.ParseRuleStorage.nonTerm;
+
+/**
+ * Number of example programs a single parser handles per second. Every thread parses with a storage of its own on top
+ * of one shared base grammar, so running this with a growing number of threads (-t) shows how parsing scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class ThroughputBenchmark {
+
+    private static final String[] PROGRAMS = {"concat", "doublequotes", "forloop", "gcd", "madness", "playground"};
+
+    private final List<String> sources = new ArrayList<>();
+    private BaseGrammar base;
+    private Parser parser;
+
+    @Setup
+    public void setup() {
+        for (String program : PROGRAMS) {
+            sources.add(Examples.read(program));
+        }
+        base = new BaseGrammar(new ParseLangV1(), nonTerm("HighLevel"));
+        parser = new RecursiveParser();
+        parser.setVerbosity(0);
+    }
+
+    /**
+     * Parses every example program once. A program that does not parse fails the benchmark, instead of making it
+     * look faster.
+     */
+    @Benchmark
+    @OperationsPerInvocation(6)
+    public int parseAll() throws ParseErrorException {
+        int parsed = 0;
+        for (String source : sources) {
+            parsed += parser.readFile(source, base.newStorage(), nonTerm("HighLevel")).getRemainingIndex();
+        }
+        return parsed;
+    }
+}
@@ -36,17 +36,24 @@ public class Interpreter {
      * @return The return value of the program
      */
     public PLData run(AST tree) {
-        assertNoGeneratedOrigin(tree);
+        assert hasNoGeneratedOrigin(tree);
         return run(tree, new HashMap<>());
     }
 
-    private void assertNoGeneratedOrigin(ASTElem tree) {
+    /**
+     * Checks that no rule in a tree originates from a rule generated for a kleene star. Only called in assertions, so
+     * that the tree is not walked (and lazily created trees are not materialised) when assertions are disabled.
+     */
+    private boolean hasNoGeneratedOrigin(ASTElem tree) {
         if (tree instanceof AST) {
-            assert ((AST) tree).getRule() == null || ((AST) tree).getRule().getOrigin().getRHS().stream().noneMatch(node -> node instanceof NonTerminal && ((NonTerminal) node).wasGeneratedByStar());
-            ((AST) tree).getChildren().forEach(this::assertNoGeneratedOrigin);
+            if (((AST) tree).getRule() != null && ((AST) tree).getRule().getOrigin().getRHS().stream().anyMatch(node -> node instanceof NonTerminal && ((NonTerminal) node).wasGeneratedByStar())) {
+                return false;
+            }
+            return ((AST) tree).getChildren().stream().allMatch(this::hasNoGeneratedOrigin);
         } else if (tree instanceof ASTElemList) {
-            ((ASTElemList) tree).forEach(this::assertNoGeneratedOrigin);
+            return ((ASTElemList) tree).stream().allMatch(this::hasNoGeneratedOrigin);
         }
+        return true;
     }
 
     private PLData run(AST tree, Map<String, ASTElem>  paramAssignments) {
@@ -73,7 +80,7 @@ public class Interpreter {
     }
 
     private PLData runNonTerminal(AST tree, Map<String, ASTElem>  paramAssignments) {
-        assertNoGeneratedOrigin(tree);
+        assert hasNoGeneratedOrigin(tree);
         PLData toReturn;
         if (declarations.containsKey(tree.getRule().getOrigin())) {
             Map<String, ASTElem> parametersToAdd = new HashMap<>();
@@ -193,7 +200,7 @@ public class Interpreter {
 
     private void replaceParameters(ASTElem toExecute, String name, PLData value) {
         if (toExecute instanceof AST) {
-            if (((AST) toExecute).getRoot().equals(nonTerm("ParameterName")) && toExecute.parseString().equals(name)) {
+            if (((AST) toExecute).getRoot().equals(nonTerm("ParameterName")) && name.contentEquals(toExecute.getText())) {
                 ((AST)toExecute).overrideSemantics(value);
             } else {
                 ((AST) toExecute).getChildren().forEach(astElem -> replaceParameters(astElem, name, value));
@@ -422,7 +429,7 @@ public class Interpreter {
             }
             return output;
         }
-        assertNoGeneratedOrigin(tree);
+        assert hasNoGeneratedOrigin(tree);
         throw new UnsupportedOperationException();
     }
 
@@ -569,7 +576,7 @@ public class Interpreter {
                 ASTElemList terms = (ASTElemList) tree.getChild(1);
                 terms.forEach(astElem -> {
                     PLData get = run((AST) ((ASTElemList)astElem).get(2), paramAssignments);
-                    boolean isAddition = ((ASTElemList)astElem).get(0).parseString().equals("+");
+                    boolean isAddition = "+".contentEquals(((ASTElemList)astElem).get(0).getText());
                     addition.add(isAddition);
                     containsMinus[0] = containsMinus[0] || !isAddition;
                     rest.add(get);
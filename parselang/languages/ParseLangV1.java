@@ -224,7 +224,8 @@ public class ParseLangV1 implements Language {
         rules.add(new ParseRule("HighLevel").addRhs(
                 star(
                         ws(),
-                        nonTerm("Declaration")
+                        nonTerm("Declaration"),
+                        cut()
                 ),
                 ws(),
                 nonTerm("OptionalExpression"),
@@ -0,0 +1,34 @@
+package parselang.parser;
+
+import parselang.languages.Language;
+import parselang.parser.data.NonTerminal;
+
+/**
+ * The standard rule set of a language together with its FIRST, FOLLOW and FIRST+ tables, computed once and never
+ * changed afterwards. Every program gets a parse rule storage of its own on top of it, which holds the rules that the
+ * program declares. Since the base grammar itself is immutable, any number of such storages can share it, also on
+ * different threads.
+ */
+public final class BaseGrammar {
+
+    private final ParseRuleStorage storage;
+
+    /**
+     * Prepares the base grammar of a language
+     * @param lang language to use
+     * @param toplevel top level nonterminal of this language
+     */
+    public BaseGrammar(Language lang, NonTerminal toplevel) {
+        storage = new ParseRuleStorage();
+        storage.prepare(lang, toplevel);
+        storage.compileLookaheadTables();
+    }
+
+    /**
+     * Creates a parse rule storage for a single program, which starts with the rules of this base grammar
+     * @return a new storage that shares the tables of this base grammar until the program changes them
+     */
+    public ParseRuleStorage newStorage() {
+        return new ParseRuleStorage(storage);
+    }
+}
@@ -0,0 +1,200 @@
+package parselang.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Program text read from a UTF-8 encoded file, for parsing programs of many megabytes. The file is mapped into memory
+ * instead of read, and its characters are decoded in chunks when they are first asked for, so a parse can start before
+ * the file is decoded and the file is never held as both bytes and a string. Once a parse no longer backtracks before
+ * a position, {@link #discardBefore(int)} lets the chunks before it be collected; should they be asked for after all,
+ * for instance to report the line of a parse error, they are decoded again.
+ * <p>
+ * Characters are found by index in constant time, so a source can be passed to a parser like any other character
+ * sequence. A source is not thread-safe, so it should only be parsed by one thread at a time.
+ */
+public final class MappedSource implements CharSequence {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private int length = -1;
+    private char[][] chunks = new char[1][];
+    private int[] chunkStarts = new int[1];
+    private char[] carriedChars = new char[1];
+    private int knownChunks = 1;
+    private int discardedChunks = 0;
+
+    private MappedSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Maps a file into memory. The file is not read until its characters are asked for, and should not change while
+     * the source is in use.
+     * @param path file to map, which must be encoded in UTF-8
+     * @return the source
+     * @throws IOException if the file could not be mapped, or is larger than 2 GB
+     */
+    public static MappedSource open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be mapped");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the number of characters in the file. The first call counts them by scanning the bytes of the file,
+     * without decoding them.
+     */
+    @Override
+    public int length() {
+        if (length < 0) {
+            int res = 0;
+            for (int i = 0; i < bytes.limit(); i++) {
+                byte b = bytes.get(i);
+                if ((b & 0xC0) != 0x80) {
+                    res++;
+                }
+                if ((b & 0xF8) == 0xF0) {
+                    res++;
+                }
+            }
+            length = res;
+        }
+        return length;
+    }
+
+    /**
+     * @inheritDoc
+     * @throws UncheckedIOException if the file is not valid UTF-8
+     */
+    @Override
+    public char charAt(int index) {
+        int chunk = index >>> CHUNK_BITS;
+        char[] chars = chunk < knownChunks ? chunks[chunk] : null;
+        if (chars == null) {
+            chars = chunk(index);
+        }
+        int offset = index & CHUNK_MASK;
+        if (offset >= chars.length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+        }
+        return chars[offset];
+    }
+
+    /**
+     * Returns the characters between two indexes. They are copied, as a source does not keep its characters.
+     */
+    @Override
+    public String subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns all characters of the file
+     */
+    @Override
+    public String toString() {
+        return subSequence(0, length());
+    }
+
+    /**
+     * Releases the decoded characters before a position, because they are not needed anymore
+     * @param position index of the first character that may still be needed
+     */
+    public void discardBefore(int position) {
+        int chunksBefore = Math.min(position >>> CHUNK_BITS, knownChunks);
+        for (int i = discardedChunks; i < chunksBefore; i++) {
+            chunks[i] = null;
+        }
+        discardedChunks = Math.max(discardedChunks, chunksBefore);
+    }
+
+    /**
+     * Decodes the chunk that holds a character. The start of a chunk in the file is only known once the chunk before
+     * it is decoded, so the chunks up to it are decoded first.
+     */
+    private char[] chunk(int index) {
+        int chunk = index >>> CHUNK_BITS;
+        while (knownChunks <= chunk) {
+            int last = knownChunks - 1;
+            if (chunks[last] == null) {
+                decode(last);
+            }
+            if (knownChunks == last + 1) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+            }
+        }
+        if (chunks[chunk] == null) {
+            decode(chunk);
+        }
+        return chunks[chunk];
+    }
+
+    /**
+     * Decodes a chunk, whose start is known. If the chunk ends in the middle of a surrogate pair, the second half of the
+     * pair is carried to the next chunk, so that every chunk but the last holds exactly {@link #CHUNK_SIZE} characters.
+     */
+    private void decode(int chunk) {
+        ByteBuffer in = bytes.duplicate().position(chunkStarts[chunk]);
+        CharBuffer out = CharBuffer.allocate(CHUNK_SIZE);
+        if (carriedChars[chunk] != 0) {
+            out.put(carriedChars[chunk]);
+        }
+        decoder.reset();
+        CoderResult result = check(decoder.decode(in, out, true));
+        char carry = 0;
+        if (result.isOverflow() && out.hasRemaining()) {
+            CharBuffer pair = CharBuffer.allocate(2);
+            check(decoder.decode(in, pair, true));
+            out.put(pair.get(0));
+            carry = pair.get(1);
+        }
+        if (result.isUnderflow()) {
+            check(decoder.flush(out));
+        }
+        chunks[chunk] = out.position() == CHUNK_SIZE ? out.array() : Arrays.copyOf(out.array(), out.position());
+        if (chunk == knownChunks - 1 && (in.hasRemaining() || carry != 0)) {
+            if (knownChunks == chunks.length) {
+                chunks = Arrays.copyOf(chunks, knownChunks * 2);
+                chunkStarts = Arrays.copyOf(chunkStarts, knownChunks * 2);
+                carriedChars = Arrays.copyOf(carriedChars, knownChunks * 2);
+            }
+            chunkStarts[knownChunks] = in.position();
+            carriedChars[knownChunks] = carry;
+            knownChunks++;
+        }
+    }
+
+    private static CoderResult check(CoderResult result) {
+        if (result.isError()) {
+            try {
+                result.throwException();
+            } catch (CharacterCodingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+}
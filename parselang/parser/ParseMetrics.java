@@ -0,0 +1,486 @@
+package parselang.parser;
+
+import parselang.parser.data.NonTerminal;
+import parselang.parser.data.SymbolTable;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Statistics of parsers and parse rule storages, collected over any number of parses on any number of threads. A parse
+ * counts its events in a {@link Recorder} of its own, which is added to these statistics once the parse is done, so
+ * counting costs no synchronization. {@link #snapshot()} returns a consistent copy of the statistics, and
+ * {@link #register(String)} makes them readable with JMX.
+ */
+public final class ParseMetrics implements ParseMetricsMXBean {
+
+    /**
+     * Kinds of grammar mutations that cause the grammar tables to be brought up to date
+     */
+    public enum Trigger {
+        PREPARE, ADD_PARAMETER, REGISTER_NON_TERMINAL, ADD_CUSTOM_RULES, REMOVE_PARAMETERS, ROLLBACK
+    }
+
+    private long parses = 0;
+    private long memoHits = 0;
+    private long memoMisses = 0;
+    private long memoInvalidations = 0;
+    private long memoEvictions = 0;
+    private long backtracks = 0;
+    private long maxBacktrackDistance = 0;
+    private long allocatedBytes = 0;
+    private final Map<String, Long> ruleAttempts = new TreeMap<>();
+    private final Map<String, Long> ruleFailures = new TreeMap<>();
+    private final Map<String, Long> nonTerminalNanos = new TreeMap<>();
+    private final long[] tableUpdates = new long[Trigger.values().length];
+    private final long[] tableUpdateNanos = new long[Trigger.values().length];
+
+    /**
+     * Starts counting the events of a single parse
+     * @param symbols symbol table of the parse rule storage the parse uses
+     * @return a recorder that adds its counts to these statistics when {@link Recorder#finish()} is called
+     */
+    public Recorder startParse(SymbolTable symbols) {
+        return new Recorder(symbols);
+    }
+
+    /**
+     * Adds the time it took to bring the grammar tables up to date
+     * @param trigger kind of mutation that caused the update
+     * @param nanos duration of the update in nanoseconds
+     */
+    public synchronized void recordTableUpdate(Trigger trigger, long nanos) {
+        tableUpdates[trigger.ordinal()]++;
+        tableUpdateNanos[trigger.ordinal()] += nanos;
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server under {@code parselang:type=ParseMetrics,name=<name>}
+     * @param name name that distinguishes these statistics from others
+     * @return the name under which they were registered
+     * @throws IllegalStateException if the statistics could not be registered, for instance because the name is taken
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("parselang", new Hashtable<>(Map.of("type", "ParseMetrics", "name", ObjectName.quote(name))));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalStateException("Parse metrics named " + name + " are already registered", e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register parse metrics", e);
+        }
+    }
+
+    /**
+     * Returns a copy of the statistics as they are now, which does not change anymore
+     * @return a snapshot of these statistics
+     */
+    public synchronized Snapshot snapshot() {
+        Map<String, Long> updates = new LinkedHashMap<>();
+        Map<String, Long> updateNanos = new LinkedHashMap<>();
+        for (Trigger trigger : Trigger.values()) {
+            updates.put(trigger.name(), tableUpdates[trigger.ordinal()]);
+            updateNanos.put(trigger.name(), tableUpdateNanos[trigger.ordinal()]);
+        }
+        return new Snapshot(parses, memoHits, memoMisses, memoInvalidations, memoEvictions, backtracks, maxBacktrackDistance, allocatedBytes, new TreeMap<>(ruleAttempts), new TreeMap<>(ruleFailures), new TreeMap<>(nonTerminalNanos), updates, updateNanos);
+    }
+
+    private synchronized void add(Recorder recorder) {
+        parses++;
+        memoHits += recorder.memoHits;
+        memoMisses += recorder.memoMisses;
+        memoInvalidations += recorder.memoInvalidations;
+        memoEvictions += recorder.memoEvictions;
+        backtracks += recorder.backtracks;
+        maxBacktrackDistance = Math.max(maxBacktrackDistance, recorder.maxBacktrackDistance);
+        allocatedBytes += recorder.allocatedBytes;
+        add(ruleAttempts, recorder.ruleAttempts, recorder.symbols);
+        add(ruleFailures, recorder.ruleFailures, recorder.symbols);
+        add(nonTerminalNanos, recorder.nonTerminalNanos, recorder.symbols);
+    }
+
+    /**
+     * Adds counts by nonterminal id to counts by nonterminal name. Ids are only known to the symbol table of a single
+     * parse rule storage, while the counts of any number of storages are added together.
+     */
+    private static void add(Map<String, Long> total, int[] counts, SymbolTable symbols) {
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] != 0) {
+                total.merge(((NonTerminal) symbols.get(id)).getName(), (long) counts[id], Long::sum);
+            }
+        }
+    }
+
+    private static void add(Map<String, Long> total, long[] amounts, SymbolTable symbols) {
+        for (int id = 0; id < amounts.length; id++) {
+            if (amounts[id] != 0) {
+                total.merge(((NonTerminal) symbols.get(id)).getName(), amounts[id], Long::sum);
+            }
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getParses() {
+        return snapshot().getParses();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getMemoHits() {
+        return snapshot().getMemoHits();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getMemoMisses() {
+        return snapshot().getMemoMisses();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getMemoInvalidations() {
+        return snapshot().getMemoInvalidations();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getMemoEvictions() {
+        return snapshot().getMemoEvictions();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getBacktracks() {
+        return snapshot().getBacktracks();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getMaxBacktrackDistance() {
+        return snapshot().getMaxBacktrackDistance();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long getAllocatedBytes() {
+        return snapshot().getAllocatedBytes();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getRuleAttempts() {
+        return snapshot().getRuleAttempts();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getRuleFailures() {
+        return snapshot().getRuleFailures();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getNonTerminalNanos() {
+        return snapshot().getNonTerminalNanos();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getTableUpdates() {
+        return snapshot().getTableUpdates();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<String, Long> getTableUpdateNanos() {
+        return snapshot().getTableUpdateNanos();
+    }
+
+    /**
+     * Counts the events of a single parse. A recorder is only used by the thread that parses.
+     */
+    public final class Recorder {
+
+        private long memoHits = 0;
+        private long memoMisses = 0;
+        private long memoInvalidations = 0;
+        private long memoEvictions = 0;
+        private long backtracks = 0;
+        private long maxBacktrackDistance = 0;
+        private long allocatedBytes = 0;
+        private int[] ruleAttempts = new int[0];
+        private int[] ruleFailures = new int[0];
+        private long[] nonTerminalNanos = new long[0];
+        private final SymbolTable symbols;
+
+        private Recorder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        /**
+         * Adds the lookups of a memo
+         * @param hits lookups that found a valid result
+         * @param misses lookups that found no result
+         * @param invalidations lookups that found a result that was no longer valid
+         */
+        public void memoLookups(long hits, long misses, long invalidations) {
+            memoHits += hits;
+            memoMisses += misses;
+            memoInvalidations += invalidations;
+        }
+
+        /**
+         * Adds the results a memo evicted, because the parse committed to the positions after them
+         * @param evictions number of evicted results
+         */
+        public void memoEvictions(long evictions) {
+            memoEvictions += evictions;
+        }
+
+        /**
+         * Counts that a rule of a nonterminal is tried
+         * @param nonTerminal left hand side of the rule
+         */
+        public void ruleAttempt(NonTerminal nonTerminal) {
+            ruleAttempts = count(ruleAttempts, symbols.intern(nonTerminal));
+        }
+
+        /**
+         * Counts that a rule of a nonterminal failed
+         * @param nonTerminal left hand side of the rule
+         * @param backtrackDistance number of characters between the position the rule was tried at and the farthest
+         *                          position parsed so far
+         * @param backtrack whether another rule is tried next
+         */
+        public void ruleFailure(NonTerminal nonTerminal, int backtrackDistance, boolean backtrack) {
+            ruleFailures = count(ruleFailures, symbols.intern(nonTerminal));
+            if (backtrack) {
+                backtracks++;
+            }
+            maxBacktrackDistance = Math.max(maxBacktrackDistance, backtrackDistance);
+        }
+
+        /**
+         * Adds the time spent parsing a nonterminal at one position, which includes the nonterminals parsed inside it
+         * @param nonTerminal the nonterminal
+         * @param nanos duration in nanoseconds
+         */
+        public void nonTerminalParsed(NonTerminal nonTerminal, long nanos) {
+            int id = symbols.intern(nonTerminal);
+            if (id >= nonTerminalNanos.length) {
+                nonTerminalNanos = Arrays.copyOf(nonTerminalNanos, Math.max(id + 1, nonTerminalNanos.length * 2));
+            }
+            nonTerminalNanos[id] += nanos;
+        }
+
+        /**
+         * Adds the number of bytes allocated during the parse
+         * @param bytes allocated bytes
+         */
+        public void allocated(long bytes) {
+            allocatedBytes += bytes;
+        }
+
+        private int[] count(int[] counts, int id) {
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+            }
+            counts[id]++;
+            return counts;
+        }
+
+        /**
+         * Adds the counts of this parse to the statistics it was started from
+         */
+        public void finish() {
+            add(this);
+        }
+    }
+
+    /**
+     * Statistics at a single point in time
+     */
+    public static final class Snapshot implements ParseMetricsMXBean {
+
+        private final long parses;
+        private final long memoHits;
+        private final long memoMisses;
+        private final long memoInvalidations;
+        private final long memoEvictions;
+        private final long backtracks;
+        private final long maxBacktrackDistance;
+        private final long allocatedBytes;
+        private final Map<String, Long> ruleAttempts;
+        private final Map<String, Long> ruleFailures;
+        private final Map<String, Long> nonTerminalNanos;
+        private final Map<String, Long> tableUpdates;
+        private final Map<String, Long> tableUpdateNanos;
+
+        private Snapshot(long parses, long memoHits, long memoMisses, long memoInvalidations, long memoEvictions, long backtracks, long maxBacktrackDistance, long allocatedBytes, Map<String, Long> ruleAttempts, Map<String, Long> ruleFailures, Map<String, Long> nonTerminalNanos, Map<String, Long> tableUpdates, Map<String, Long> tableUpdateNanos) {
+            this.parses = parses;
+            this.memoHits = memoHits;
+            this.memoMisses = memoMisses;
+            this.memoInvalidations = memoInvalidations;
+            this.memoEvictions = memoEvictions;
+            this.backtracks = backtracks;
+            this.maxBacktrackDistance = maxBacktrackDistance;
+            this.allocatedBytes = allocatedBytes;
+            this.ruleAttempts = Collections.unmodifiableMap(ruleAttempts);
+            this.ruleFailures = Collections.unmodifiableMap(ruleFailures);
+            this.nonTerminalNanos = Collections.unmodifiableMap(nonTerminalNanos);
+            this.tableUpdates = Collections.unmodifiableMap(tableUpdates);
+            this.tableUpdateNanos = Collections.unmodifiableMap(tableUpdateNanos);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getParses() {
+            return parses;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getMemoHits() {
+            return memoHits;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getMemoMisses() {
+            return memoMisses;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getMemoInvalidations() {
+            return memoInvalidations;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getMemoEvictions() {
+            return memoEvictions;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getBacktracks() {
+            return backtracks;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getMaxBacktrackDistance() {
+            return maxBacktrackDistance;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Map<String, Long> getRuleAttempts() {
+            return ruleAttempts;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Map<String, Long> getRuleFailures() {
+            return ruleFailures;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Map<String, Long> getNonTerminalNanos() {
+            return nonTerminalNanos;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Map<String, Long> getTableUpdates() {
+            return tableUpdates;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public Map<String, Long> getTableUpdateNanos() {
+            return tableUpdateNanos;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public String toString() {
+            return "parses: " + parses + "\n"
+                    + "memo hits: " + memoHits + ", misses: " + memoMisses + ", invalidations: " + memoInvalidations + ", evictions: " + memoEvictions + "\n"
+                    + "backtracks: " + backtracks + ", max backtrack distance: " + maxBacktrackDistance + "\n"
+                    + "allocated bytes: " + allocatedBytes + "\n"
+                    + "rule attempts: " + ruleAttempts + "\n"
+                    + "rule failures: " + ruleFailures + "\n"
+                    + "nonterminal nanos: " + nonTerminalNanos + "\n"
+                    + "table updates: " + tableUpdates + "\n"
+                    + "table update nanos: " + tableUpdateNanos;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package parselang.parser;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ParseMetrics}, through which parser statistics can be read with JMX
+ */
+public interface ParseMetricsMXBean {
+
+    /**
+     * @return number of finished top level parses
+     */
+    long getParses();
+
+    /**
+     * @return number of memo lookups that found a valid result
+     */
+    long getMemoHits();
+
+    /**
+     * @return number of memo lookups that found no result
+     */
+    long getMemoMisses();
+
+    /**
+     * @return number of memo lookups that found a result that a grammar mutation or rollback had invalidated
+     */
+    long getMemoInvalidations();
+
+    /**
+     * @return number of memoized results that were evicted, because a cut committed the parse to the positions after
+     * them
+     */
+    long getMemoEvictions();
+
+    /**
+     * @return number of times a rule failed after which another rule was tried
+     */
+    long getBacktracks();
+
+    /**
+     * @return largest number of characters between the position of a failed rule and the farthest position parsed
+     * at that moment
+     */
+    long getMaxBacktrackDistance();
+
+    /**
+     * @return number of bytes allocated on the parsing threads during top level parses, or 0 if the JVM does not
+     * measure this
+     */
+    long getAllocatedBytes();
+
+    /**
+     * @return number of rules tried, per nonterminal
+     */
+    Map<String, Long> getRuleAttempts();
+
+    /**
+     * @return number of rules that failed, per nonterminal
+     */
+    Map<String, Long> getRuleFailures();
+
+    /**
+     * @return nanoseconds spent parsing, per nonterminal, including the nonterminals parsed inside it
+     */
+    Map<String, Long> getNonTerminalNanos();
+
+    /**
+     * @return number of times the grammar tables were brought up to date, per kind of mutation that triggered it
+     */
+    Map<String, Long> getTableUpdates();
+
+    /**
+     * @return nanoseconds spent bringing the grammar tables up to date, per kind of mutation that triggered it
+     */
+    Map<String, Long> getTableUpdateNanos();
+}
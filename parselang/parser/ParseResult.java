@@ -1,48 +1,125 @@
 package parselang.parser;
 
 import parselang.parser.data.AST;
+import parselang.parser.data.ASTElem;
+import parselang.parser.data.ASTElemList;
+import parselang.parser.data.FlatAST;
+import parselang.parser.data.TextSlice;
 
 public class ParseResult {
 
-    private final String original;
-    private AST tree;
+    /**
+     * Shared result signalling that a parse attempt failed. Compare by identity; it carries no string or tree.
+     */
+    public static final ParseResult FAIL = new ParseResult(null, null);
+
+    private final CharSequence original;
+    private ASTElem tree;
+    private final int end;
+    private final FlatAST flatTree;
+    private final int node;
 
     /**
      * Saves a result of a parse attempt
      * @param original string being parsed
      * @param tree resulting tree from the parse attempt
      */
-    public ParseResult(String original, AST tree) {
+    public ParseResult(CharSequence original, AST tree) {
         this.original = original;
         this.tree = tree;
+        this.end = tree == null ? 0 : tree.getParsedTo();
+        this.flatTree = null;
+        this.node = FlatAST.NONE;
+    }
+
+    /**
+     * Saves a result of parsing a kleene star
+     * @param original string being parsed
+     * @param elements the repetitions that were parsed
+     * @param end index of the first character after the last repetition
+     */
+    public ParseResult(CharSequence original, ASTElemList elements, int end) {
+        this.original = original;
+        this.tree = elements;
+        this.end = end;
+        this.flatTree = null;
+        this.node = FlatAST.NONE;
     }
 
     /**
-     * Returns the part of the string that is not yet parsed
+     * Saves a result of a parse attempt that was recorded in a flat tree. The AST or list of AST elements is only
+     * created when it is asked for.
+     * @param original string being parsed
+     * @param flatTree tree the result was recorded in
+     * @param node index of the node of the result in the flat tree
+     * @param end index of the first character after the parsed part of the string
+     */
+    public ParseResult(CharSequence original, FlatAST flatTree, int node, int end) {
+        this.original = original;
+        this.tree = null;
+        this.end = end;
+        this.flatTree = flatTree;
+        this.node = node;
+    }
+
+    /**
+     * Returns the part of the string that is not yet parsed, as a view that copies no characters
      * @return the not yet parsed part of the string
      */
-    public String getRemaining() {
-        if (tree.getParsedTo() == original.length()) {
-            return "";
-        } else {
-            return original.substring(tree.getParsedTo());
-        }
+    public CharSequence getRemaining() {
+        return new TextSlice(original, end, original.length());
+    }
+
+    /**
+     * Returns the number of characters of the string that are not yet parsed
+     * @return the number of characters
+     */
+    public int getRemainingLength() {
+        return original.length() - end;
     }
 
     /**
      * Returns the AST that was parsed
      * @return the AST
+     * @throws ClassCastException if this is the result of parsing a kleene star
      */
     public AST getTree() {
+        return (AST) getElement();
+    }
+
+    /**
+     * Returns the AST or list of AST elements that was parsed
+     * @return the parsed element
+     */
+    public ASTElem getElement() {
+        if (tree == null && flatTree != null) {
+            tree = flatTree.toElement(node);
+        }
         return tree;
     }
 
+    /**
+     * Returns the flat tree this result was recorded in
+     * @return the flat tree, or null if the result was not recorded in one
+     */
+    public FlatAST getFlatTree() {
+        return flatTree;
+    }
+
+    /**
+     * Returns the index of the node of this result in its flat tree
+     * @return index of the node, or {@link FlatAST#NONE} if the result was not recorded in a flat tree
+     */
+    public int getNode() {
+        return node;
+    }
+
     /**
      * @inheritDoc
      */
     @Override
     public String toString() {
-        return "<\"" +  (getRemaining().replaceAll("(\r\n)|(\n)", "\\\\n")).replaceAll("\"", "\\\\\"") + "\", \n" + tree + ">";
+        return "<\"" +  (getRemaining().toString().replaceAll("(\r\n)|(\n)", "\\\\n")).replaceAll("\"", "\\\\\"") + "\", \n" + getElement() + ">";
     }
 
     /**
@@ -50,7 +127,7 @@ public class ParseResult {
      * @return the index
      */
     public int getRemainingIndex() {
-        return tree.getParsedTo();
+        return end;
     }
 
     /**
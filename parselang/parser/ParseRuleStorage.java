@@ -14,13 +14,82 @@ public class ParseRuleStorage {
 
     private final Map<NonTerminal, List<ParseRule>> rules = new HashMap<>();
     private Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> firstPlus = new HashMap<>();
+    private LookaheadTable[] lookaheadTables = new LookaheadTable[0];
     private final Set<NonTerminal> allNonterminals = new HashSet<>();
+    private final SymbolTable symbols;
 
-    private final FirstCalculator firstCalc = new NaiveFirstCalculator();
-    private final FollowCalculator followCalc = new NaiveFollowCalculator();
+    private final FirstCalculator firstCalc;
+    private final FollowCalculator followCalc;
     private final FirstPlusCalculator firstPlusCalc = new NaiveFirstPlusCalculator();
+    private IncrementalGrammarAnalysis analysis;
     private NonTerminal toplevel;
+    private final ParseRuleStorage base;
 
+    private long version = 0;
+    private long[] changedAt = new long[0];
+
+    private final List<Change> history = new ArrayList<>();
+    private final BitSet rolledBack = new BitSet();
+    private int openSnapshots = 0;
+
+    /**
+     * Nonterminals whose parse mutates the grammar, and every nonterminal from which one of them can be reached, by id.
+     * Bits are never cleared when rules are removed, so this may contain nonterminals that no longer reach one.
+     */
+    private final BitSet mutators = new BitSet();
+    private final BitSet mutating = new BitSet();
+
+    private ParseMetrics metrics = null;
+    private ParseMetrics.Trigger pendingTrigger = null;
+
+    private int batchDepth = 0;
+    private final List<ParseRule> pendingAdded = new ArrayList<>();
+    private final List<ParseRule> pendingRemoved = new ArrayList<>();
+
+    /**
+     * Creates an empty parse rule storage that computes its tables with the SCC-ordered calculators
+     */
+    public ParseRuleStorage() {
+        this(new SCCFirstCalculator(), new SCCFollowCalculator());
+    }
+
+    /**
+     * Creates an empty parse rule storage
+     * @param firstCalc calculator used for the FIRST set when the storage is prepared
+     * @param followCalc calculator used for the FOLLOW set when the storage is prepared
+     */
+    public ParseRuleStorage(FirstCalculator firstCalc, FollowCalculator followCalc) {
+        this.firstCalc = firstCalc;
+        this.followCalc = followCalc;
+        this.base = null;
+        this.symbols = new SymbolTable();
+    }
+
+    /**
+     * Creates a parse rule storage that extends a prepared one. The rule lists and tables of the base storage are shared
+     * until they change, so this only copies their indexes.
+     * @param base prepared storage, which must not change anymore
+     */
+    ParseRuleStorage(ParseRuleStorage base) {
+        this.firstCalc = base.firstCalc;
+        this.followCalc = base.followCalc;
+        this.base = base;
+        this.symbols = new SymbolTable(base.symbols);
+        toplevel = base.toplevel;
+        rules.putAll(base.rules);
+        allNonterminals.addAll(base.allNonterminals);
+        metrics = base.metrics;
+        analysis = new IncrementalGrammarAnalysis(base.analysis, rules);
+        firstPlus = analysis.getFirstPlus();
+        lookaheadTables = base.lookaheadTables.clone();
+        version = base.version;
+        changedAt = base.changedAt.clone();
+        generatedNonTerminals = base.generatedNonTerminals.clone();
+        parameterNameRules.addAll(base.parameterNameRules);
+        registered.or(base.registered);
+        mutators.or(base.mutators);
+        mutating.or(base.mutating);
+    }
 
     /**
      * Prepares the parse rule storage with the standard rule set of a language
@@ -31,6 +100,7 @@ public class ParseRuleStorage {
         this.toplevel = toplevel;
         setDefaults(lang);
         calculateFirstPlus(toplevel);
+        clearHistory();
     }
 
     /**
@@ -40,14 +110,318 @@ public class ParseRuleStorage {
      * @param addedRule rule that was added by the user
      */
     public void addCustomRules(ParseRule inheritedRule, Direction inheritedRuleDirection, ParseRule addedRule) {
-        addRule(inheritedRule, inheritedRuleDirection);
-        addRule(addedRule, Direction.RIGHT);
-        calculateFirstPlus(toplevel);
+        List<ParseRule> added = new ArrayList<>(addRule(inheritedRule, inheritedRuleDirection));
+        added.addAll(addRule(addedRule, Direction.RIGHT));
+        rulesAdded(added, ParseMetrics.Trigger.ADD_CUSTOM_RULES);
+    }
+
+    /**
+     * Starts a batch of grammar mutations. The FIRST+ table is not updated until the batch is committed or a lookup
+     * needs it, so consecutive mutations are processed together. Batches may be nested.
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends the innermost batch of grammar mutations. When the outermost batch ends, the FIRST+ table is brought up to
+     * date with all mutations made during the batch.
+     * @throws IllegalStateException if no batch was started
+     */
+    public void commitBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No batch of grammar mutations was started");
+        }
+        batchDepth--;
+        if (batchDepth == 0) {
+            updateTables();
+        }
+    }
+
+    /**
+     * Sets the statistics in which the time spent bringing the tables up to date is recorded
+     * @param metrics statistics to record in, or null to stop recording
+     */
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the statistics in which the time spent bringing the tables up to date is recorded
+     * @return the statistics, or null if nothing is recorded
+     */
+    public ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void rulesAdded(Collection<ParseRule> added, ParseMetrics.Trigger trigger) {
+        if (pendingTrigger == null) {
+            pendingTrigger = trigger;
+        }
+        pendingAdded.addAll(added);
+        if (batchDepth == 0) {
+            updateTables();
+        }
+    }
+
+    private void rulesRemoved(Collection<ParseRule> removed, ParseMetrics.Trigger trigger) {
+        if (pendingTrigger == null) {
+            pendingTrigger = trigger;
+        }
+        for (ParseRule rule : removed) {
+            if (!cancelPendingAddition(rule)) {
+                pendingRemoved.add(rule);
+            }
+        }
+        if (batchDepth == 0) {
+            updateTables();
+        }
+    }
+
+    /**
+     * Forgets a pending addition of a rule. Rules are compared by identity, since a rule may be added again as an equal
+     * but different object while the first one is still in use.
+     * @param rule rule that is removed
+     * @return whether the addition of the rule was still pending
+     */
+    private boolean cancelPendingAddition(ParseRule rule) {
+        for (Iterator<ParseRule> it = pendingAdded.iterator(); it.hasNext(); ) {
+            if (it.next() == rule) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes a snapshot of the grammar, to which it can be restored with {@link #rollback(int)}. This takes constant
+     * time, since mutations are recorded as they are made. Every snapshot is ended by either {@link #rollback(int)} or
+     * {@link #release(int)}, innermost first. Mutations are only recorded while a snapshot is open, so a storage that is
+     * mutated without snapshots keeps no history.
+     * @return an identifier of the snapshot
+     */
+    public int snapshot() {
+        openSnapshots++;
+        return history.size();
+    }
+
+    /**
+     * Ends a snapshot without undoing anything, such as when the alternative it was taken for parsed. Once no snapshot
+     * is open anymore, the recorded mutations are forgotten, since nothing can roll them back.
+     * @param snapshot identifier returned by {@link #snapshot()}
+     * @throws IllegalStateException if no snapshot is open
+     */
+    public void release(int snapshot) {
+        if (openSnapshots == 0) {
+            throw new IllegalStateException("No snapshot is open");
+        }
+        openSnapshots--;
+        if (openSnapshots == 0) {
+            history.clear();
+        }
+    }
+
+    /**
+     * Undoes every grammar mutation made after a snapshot was taken, and ends the snapshot. The tables are brought back
+     * up to date incrementally, and parse results memoized since the snapshot are no longer considered valid, as their
+     * side effects on the grammar are undone.
+     * @param snapshot identifier returned by {@link #snapshot()}
+     * @throws IllegalStateException if the history was cleared after the snapshot was taken
+     */
+    public void rollback(int snapshot) {
+        if (snapshot > history.size() || openSnapshots == 0) {
+            throw new IllegalStateException("Snapshot is no longer available");
+        }
+        openSnapshots--;
+        if (snapshot == history.size()) {
+            return;
+        }
+        updateTables();
+        rolledBack.set((int) history.get(snapshot).version + 1, (int) version + 1);
+        beginBatch();
+        try {
+            while (history.size() > snapshot) {
+                history.remove(history.size() - 1).undo.run();
+            }
+        } finally {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Forgets all recorded mutations and ends every open snapshot, after which no earlier snapshot can be restored
+     * anymore and mutations are no longer recorded until the next snapshot. Which versions were rolled back is forgotten
+     * as well, so parse results memoized before should not be used anymore, as is the case once a parse is done.
+     */
+    public void clearHistory() {
+        history.clear();
+        rolledBack.clear();
+        openSnapshots = 0;
+    }
+
+    private void record(Runnable undo) {
+        if (openSnapshots > 0) {
+            history.add(new Change(undo, version));
+        }
+    }
+
+    /**
+     * A recorded grammar mutation
+     */
+    private static class Change {
+
+        private final Runnable undo;
+        private final long version;
+
+        private Change(Runnable undo, long version) {
+            this.undo = undo;
+            this.version = version;
+        }
+    }
+
+    private void updateTables() {
+        if (!pendingAdded.isEmpty() || !pendingRemoved.isEmpty()) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            Set<NonTerminal> changed = analysis.rulesChanged(pendingAdded, pendingRemoved);
+            assert analysis.agreesWithNaiveCalculators() : "Incremental update of " + pendingAdded + " and " + pendingRemoved + " diverged from the naive calculators";
+            for (ParseRule rule : pendingAdded) {
+                if (!mutating.get(symbols.intern(rule.getLHS())) && rule.getRHS().stream().anyMatch(this::reachesMutator)) {
+                    markMutating(rule.getLHS());
+                }
+            }
+            pendingAdded.clear();
+            pendingRemoved.clear();
+            if (metrics != null) {
+                metrics.recordTableUpdate(pendingTrigger, System.nanoTime() - start);
+            }
+            pendingTrigger = null;
+            if (changed.isEmpty()) {
+                return;
+            }
+            version++;
+            for (NonTerminal nonTerminal : changed) {
+                int id = symbols.intern(nonTerminal);
+                if (id < lookaheadTables.length) {
+                    lookaheadTables[id] = null;
+                }
+            }
+            for (Node dependent : analysis.dependents(changed)) {
+                int id = symbols.intern(dependent);
+                if (id >= changedAt.length) {
+                    changedAt = Arrays.copyOf(changedAt, Math.max(id + 1, changedAt.length * 2));
+                }
+                changedAt[id] = version;
+            }
+        }
+    }
+
+    /**
+     * Returns the grammar version, which is increased by every mutation that changes how some nonterminal is parsed.
+     * @return the current grammar version
+     */
+    public long getVersion() {
+        updateTables();
+        return version;
+    }
+
+    /**
+     * Returns the table that assigns ids to the nodes of this storage. A storage created on top of a base grammar has a
+     * table of its own that extends the table of the base grammar.
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Checks whether a parse result computed under some grammar version may still be used for a node. This is not the
+     * case if parsing the node may have changed since, or if the version was rolled back.
+     * @param node a nonterminal, terminal or kleene star node
+     * @param resultVersion grammar version the result was computed under
+     * @return whether the result is still valid
+     */
+    public boolean isValid(Node node, long resultVersion) {
+        return resultVersion >= getChangedAt(node) && !rolledBack.get((int) resultVersion);
+    }
+
+    /**
+     * Returns the last grammar version in which parsing a node may have changed, which is the case if the rules to try
+     * for the node, or for any nonterminal reachable from it, changed.
+     * @param node a nonterminal, terminal or kleene star node
+     * @return the oldest grammar version under which a parse result for this node is still valid
+     */
+    public long getChangedAt(Node node) {
+        updateTables();
+        if (node instanceof StarNode) {
+            node = getGeneratedNonTerminal((StarNode) node);
+        }
+        int id = symbols.intern(node);
+        return id < changedAt.length ? changedAt[id] : 0;
+    }
+
+    /**
+     * Declares that parsing a nonterminal mutates the grammar, such as a declaration
+     * @param nonTerminal the nonterminal
+     */
+    public void addMutator(NonTerminal nonTerminal) {
+        int id = symbols.intern(nonTerminal);
+        if (!mutators.get(id)) {
+            updateTables();
+            mutators.set(id);
+            markMutating(nonTerminal);
+        }
+    }
+
+    /**
+     * Checks whether parsing a rule may mutate the grammar, which is the case if its left hand side is a nonterminal
+     * declared with {@link #addMutator(NonTerminal)} or one can be reached from its right hand side. Rules for which this
+     * does not hold need no snapshot to be rolled back when they fail.
+     * @param rule a rule of this storage or the origin of one
+     * @return whether parsing the rule may mutate the grammar
+     */
+    public boolean mayMutate(ParseRule rule) {
+        updateTables();
+        if (mutators.get(symbols.intern(rule.getLHS()))) {
+            return true;
+        }
+        for (Node node : rule.getRHS()) {
+            if (reachesMutator(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether parsing a repetition of a kleene star may mutate the grammar
+     * @param star a kleene star node occurring in the rules of this storage
+     * @return whether parsing a repetition may mutate the grammar
+     */
+    public boolean mayMutate(StarNode star) {
+        updateTables();
+        return reachesMutator(star);
+    }
+
+    private boolean reachesMutator(Node node) {
+        while (node instanceof BoundNode) {
+            node = ((BoundNode) node).getContent();
+        }
+        if (node instanceof StarNode) {
+            node = getGeneratedNonTerminal((StarNode) node);
+        }
+        return node instanceof NonTerminal && mutating.get(symbols.intern(node));
+    }
+
+    private void markMutating(NonTerminal nonTerminal) {
+        for (Node dependent : analysis.dependents(Collections.singleton(nonTerminal))) {
+            mutating.set(symbols.intern(dependent));
+        }
     }
 
     private List<ParseRule> addRule(ParseRule rule, Direction dir) {
         List<ParseRule> rules = rule.convertStarNodes();
-        addRules(rules, dir);
+        addRules(rules, dir, true);
         return rules;
     }
 
@@ -64,41 +438,119 @@ public class ParseRuleStorage {
         }
     }
 
-    private void addRules(Collection<ParseRule> rules, Direction dir) {
+    private void addRules(Collection<ParseRule> rules, Direction dir, boolean undoable) {
         for (ParseRule rule : rules) {
+            symbols.intern(rule);
+            symbols.intern(rule.getOrigin());
             NonTerminal nonTerminal = rule.getLHS();
             allNonterminals.add(nonTerminal);
-            this.rules.computeIfAbsent(nonTerminal, nonTerminal1 -> new LinkedList<>());
+            List<ParseRule> rulesForNonTerminal = writableRules(nonTerminal);
             addMissingNonterminals(rule.getRHS());
-            switch (dir) {
-                case LEFT:
-                    this.rules.get(nonTerminal).add(0, rule);
-                    break;
-                case RIGHT:
-                    this.rules.get(nonTerminal).add(rule);
+            int index = dir == Direction.LEFT ? 0 : rulesForNonTerminal.size();
+            rulesForNonTerminal.add(index, rule);
+            if (undoable) {
+                record(() -> {
+                    rulesForNonTerminal.removeIf(existing -> existing == rule);
+                    rulesRemoved(Collections.singleton(rule), ParseMetrics.Trigger.ROLLBACK);
+                });
             }
         }
     }
 
+    /**
+     * Returns the rules of a nonterminal so that they can be modified. Rules that are still shared with the base storage
+     * are copied first.
+     */
+    private List<ParseRule> writableRules(NonTerminal nonTerminal) {
+        List<ParseRule> rulesForNonTerminal = rules.computeIfAbsent(nonTerminal, nonTerminal1 -> new LinkedList<>());
+        if (base != null && rulesForNonTerminal == base.rules.get(nonTerminal)) {
+            rulesForNonTerminal = new LinkedList<>(rulesForNonTerminal);
+            rules.put(nonTerminal, rulesForNonTerminal);
+        }
+        return rulesForNonTerminal;
+    }
+
+    /**
+     * Compiles the lookahead tables of all nonterminals in advance, so that looking up rules never modifies this storage.
+     */
+    void compileLookaheadTables() {
+        updateTables();
+        for (NonTerminal nonTerminal : firstPlus.keySet()) {
+            getByNonTerminal(nonTerminal, LookaheadTable.END);
+        }
+    }
+
     /**
      * Returns an ordered collection of applicable rules to parse a nonterminal with a single character lookahead.
      * @param nonTerminal nonterminal to parse to
-     * @param startsWith a single character lookahead
+     * @param startsWith a single character lookahead, or null at the end of the input
      * @return an ordered collection of rules to try
      */
     public Collection<ParseRule> getByNonTerminal(Node nonTerminal, Character startsWith) {
+        return getByNonTerminal(nonTerminal, startsWith == null ? LookaheadTable.END : startsWith);
+    }
+
+    /**
+     * Returns an ordered list of applicable rules to parse a nonterminal with a single character lookahead.
+     * @param nonTerminal nonterminal to parse to
+     * @param lookahead a single character lookahead, or {@link LookaheadTable#END} at the end of the input
+     * @return an immutable list of rules to try, in order of priority
+     */
+    public List<ParseRule> getByNonTerminal(Node nonTerminal, int lookahead) {
         if (!(nonTerminal instanceof NonTerminal)) {
             return Collections.emptyList();
         }
-        if (firstPlus.containsKey(nonTerminal)) {
-            if (firstPlus.get(nonTerminal).containsKey(startsWith)) {
-                return firstPlus.get(nonTerminal).get(startsWith);
+        updateTables();
+        int id = symbols.intern(nonTerminal);
+        LookaheadTable table = id < lookaheadTables.length ? lookaheadTables[id] : null;
+        if (table == null) {
+            if (!firstPlus.containsKey(nonTerminal)) {
+                System.out.println("Warning! No such rule! => " + ((NonTerminal)nonTerminal).getName() + ", starts with: \"" + (lookahead == LookaheadTable.END ? null : (char) lookahead) + "\"");
+                return Collections.emptyList();
             }
-            return firstPlus.get(nonTerminal).getOrDefault(null, new TreeSet<>(Comparator.comparingInt(value -> rules.get(nonTerminal).indexOf(value))));
-        } else {
-            System.out.println("Warning! No such rule! => " + ((NonTerminal)nonTerminal).getName() + ", starts with: \"" + startsWith + "\"");
-            return Collections.emptyList();
+            if (id >= lookaheadTables.length) {
+                lookaheadTables = Arrays.copyOf(lookaheadTables, Math.max(id + 1, lookaheadTables.length * 2));
+            }
+            table = compileLookaheadTable((NonTerminal) nonTerminal);
+            lookaheadTables[id] = table;
+        }
+        return table.get(lookahead);
+    }
+
+    /**
+     * Compiles the FIRST+ set of a nonterminal. The FIRST+ set is computed on rules without kleene stars, but the parser
+     * handles kleene stars itself, so the rules of nonterminals written by the user are replaced by their original.
+     */
+    private LookaheadTable compileLookaheadTable(NonTerminal nonTerminal) {
+        if (nonTerminal.wasGeneratedByStar()) {
+            return new LookaheadTable(firstPlus.get(nonTerminal));
+        }
+        Map<Character, List<ParseRule>> originals = new HashMap<>();
+        for (Map.Entry<Character, TreeSet<ParseRule>> entry : firstPlus.get(nonTerminal).entrySet()) {
+            originals.put(entry.getKey(), entry.getValue().stream().map(ParseRule::getOrigin).collect(Collectors.toList()));
+        }
+        return new LookaheadTable(originals);
+    }
+
+    private NonTerminal[] generatedNonTerminals = new NonTerminal[0];
+
+    /**
+     * Returns the nonterminal that represents a kleene star node in the FIRST+ set. Its rules are tried in the same
+     * order as a repetition and the empty sequence would be.
+     * @param star a kleene star node occurring in the rules of this storage
+     * @return the nonterminal generated for it
+     */
+    public NonTerminal getGeneratedNonTerminal(StarNode star) {
+        int id = symbols.intern(star);
+        if (id >= generatedNonTerminals.length) {
+            generatedNonTerminals = Arrays.copyOf(generatedNonTerminals, Math.max(id + 1, generatedNonTerminals.length * 2));
+        }
+        if (generatedNonTerminals[id] == null) {
+            NonTerminal generated = new NonTerminal("(" + star + ")", true);
+            symbols.intern(generated);
+            generatedNonTerminals[id] = generated;
         }
+        return generatedNonTerminals[id];
     }
 
     /**
@@ -138,6 +590,14 @@ public class ParseRuleStorage {
         return new BoundNode(node, name, lazy);
     }
 
+    /**
+     * Shorthand for new CutNode()
+     * @return a cut node
+     */
+    public static CutNode cut() {
+        return new CutNode();
+    }
+
     /**
      * Shorthand for new StarNode()
      * @param content nodes affected by the kleene star
@@ -215,9 +675,15 @@ public class ParseRuleStorage {
 
 
     private void calculateFirstPlus(NonTerminal topLevel) {
-        Map<Node, Set<Character>> first = firstCalc.computeFirst(rules, getAllTerminals(), getAllNonTerminals());
-        Map<Node, Set<Character>> follow = followCalc.computeFollow(topLevel, first, rules, getAllNonTerminals());
+        long start = metrics == null ? 0 : System.nanoTime();
+        Map<Node, CharSet> first = firstCalc.computeFirst(rules, getAllTerminals(), getAllNonTerminals());
+        Map<Node, CharSet> follow = followCalc.computeFollow(topLevel, first, rules, getAllNonTerminals());
         firstPlus = firstPlusCalc.computeFirstPlus(rules, first, follow, getAllNonTerminals());
+        analysis = new IncrementalGrammarAnalysis(topLevel, rules, first, follow, firstPlus);
+        lookaheadTables = new LookaheadTable[symbols.size()];
+        if (metrics != null) {
+            metrics.recordTableUpdate(ParseMetrics.Trigger.PREPARE, System.nanoTime() - start);
+        }
     }
 
 
@@ -228,21 +694,29 @@ public class ParseRuleStorage {
      * @param parameterName name of the parameter
      */
     public void addParameter(String parameterName) {
-        parameterNameRules.addAll(addRule(new ParseRule("ParameterName").addRhs(term(parameterName)), Direction.RIGHT));
-        calculateFirstPlus(toplevel);
+        List<ParseRule> added = addRule(new ParseRule("ParameterName").addRhs(term(parameterName)), Direction.RIGHT);
+        for (ParseRule rule : added) {
+            if (parameterNameRules.add(rule)) {
+                record(() -> parameterNameRules.remove(rule));
+            }
+        }
+        rulesAdded(added, ParseMetrics.Trigger.ADD_PARAMETER);
     }
 
-    private final Set<NonTerminal> registered = new HashSet<>();
+    private final BitSet registered = new BitSet();
 
     /**
-     * Registers a new nonterminal as being present somewhere in this storage
+     * Registers a new nonterminal as being present somewhere in this storage. Registering a nonterminal again does
+     * nothing, and a registration is never rolled back, so parsing the same nonterminal after a rollback costs no update.
      * @param nonTerminal the nonterminal to register
      */
     public void registerNonTerminal(NonTerminal nonTerminal) {
-        if (!registered.contains(nonTerminal)) {
-            registered.add(nonTerminal);
-            addRule(new ParseRule("RegisteredNonTerminal").addRhs(term(nonTerminal.getName())), Direction.LEFT);
-            calculateFirstPlus(toplevel);
+        int id = symbols.intern(nonTerminal);
+        if (!registered.get(id)) {
+            registered.set(id);
+            List<ParseRule> added = new ParseRule("RegisteredNonTerminal").addRhs(term(nonTerminal.getName())).convertStarNodes();
+            addRules(added, Direction.LEFT, false);
+            rulesAdded(added, ParseMetrics.Trigger.REGISTER_NON_TERMINAL);
         }
     }
 
@@ -250,8 +724,22 @@ public class ParseRuleStorage {
      * Clears all rules added for parameter names
      */
     public void removeParameters() {
-        parameterNameRules.forEach(x -> rules.get(x.getLHS()).remove(x));
+        List<ParseRule> removed = new ArrayList<>();
+        for (ParseRule parameterNameRule : parameterNameRules) {
+            List<ParseRule> rulesForNonTerminal = writableRules(parameterNameRule.getLHS());
+            int index = rulesForNonTerminal.indexOf(parameterNameRule);
+            if (index >= 0) {
+                ParseRule rule = rulesForNonTerminal.remove(index);
+                removed.add(rule);
+                record(() -> {
+                    rulesForNonTerminal.add(index, rule);
+                    rulesAdded(Collections.singleton(rule), ParseMetrics.Trigger.ROLLBACK);
+                });
+            }
+        }
+        Set<ParseRule> cleared = new HashSet<>(parameterNameRules);
         parameterNameRules.clear();
-        calculateFirstPlus(toplevel);
+        record(() -> parameterNameRules.addAll(cleared));
+        rulesRemoved(removed, ParseMetrics.Trigger.REMOVE_PARAMETERS);
     }
 }
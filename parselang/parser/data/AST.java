@@ -2,16 +2,18 @@ package parselang.parser.data;
 
 import parselang.interpreter.data.ParameterValue;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 /**
  * Abstract syntax tree of a parsed object
  */
 public class AST extends ASTElem  {
 
-    private final String originalString;
+    private final CharSequence originalString;
     private ParseRule ruleApplied;
     private final Node root;
 
@@ -19,8 +21,11 @@ public class AST extends ASTElem  {
     private int parsedTo;
 
 
-    private final List<ASTElem> children = new LinkedList<>();
+    private ASTElem[] children;
+    private int childCount = 0;
 
+    private FlatAST source = null;
+    private int sourceNode;
 
 
     /**
@@ -28,11 +33,15 @@ public class AST extends ASTElem  {
      */
     @Override
     public ASTElem copy() {
-        AST res = new AST(root.copy(), originalString);
+        materialize();
+        AST res = new AST(root.copy(), originalString, childCount);
         res.ruleApplied = ruleApplied == null ? null : ruleApplied.copy();
         res.parsedFrom = parsedFrom;
         res.parsedTo = parsedTo;
-        children.forEach(x -> res.children.add(x.copy()));
+        for (int i = 0; i < childCount; i++) {
+            res.children[i] = children[i].copy();
+        }
+        res.childCount = childCount;
         res.overriddenSemantics = overriddenSemantics;
         return res;
     }
@@ -45,11 +54,13 @@ public class AST extends ASTElem  {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         AST ast = (AST) o;
+        materialize();
+        ast.materialize();
         return parsedFrom == ast.parsedFrom &&
                 parsedTo == ast.parsedTo &&
                 Objects.equals(ruleApplied, ast.ruleApplied) &&
                 root.equals(ast.root) &&
-                children.equals(ast.children);
+                Arrays.equals(children, 0, childCount, ast.children, 0, ast.childCount);
     }
 
     /**
@@ -57,7 +68,7 @@ public class AST extends ASTElem  {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(ruleApplied, root, parsedFrom, parsedTo, children);
+        return Objects.hash(ruleApplied, root, parsedFrom, parsedTo, getChildren());
     }
 
     /**
@@ -72,9 +83,50 @@ public class AST extends ASTElem  {
      * Creates a new AST with a nonterminal as tree root
      * @param root tree root
      */
-    public AST(Node root, String originalString) {
+    public AST(Node root, CharSequence originalString) {
+        this(root, originalString, 0);
+    }
+
+    /**
+     * Creates a new AST with room for a known number of children, such as the length of the right hand side of the
+     * rule that is applied
+     * @param root tree root
+     * @param originalString string that is parsed
+     * @param expectedChildren number of children that will be added
+     */
+    public AST(Node root, CharSequence originalString, int expectedChildren) {
         this.root = root;
         this.originalString = originalString;
+        this.children = new ASTElem[expectedChildren];
+    }
+
+    /**
+     * Creates an AST for a node of a flat tree. Its children are created when they are first navigated into.
+     * @param source flat tree
+     * @param node index of the node in the flat tree
+     */
+    AST(FlatAST source, int node) {
+        this.root = source.getRoot(node);
+        this.originalString = source.getOriginalString();
+        this.ruleApplied = source.getRule(node);
+        this.parsedFrom = source.getParsedFrom(node);
+        this.parsedTo = source.getParsedTo(node);
+        this.source = source;
+        this.sourceNode = node;
+    }
+
+    /**
+     * Creates the children of an AST for a node of a flat tree, if that did not happen yet
+     */
+    private void materialize() {
+        if (source != null) {
+            childCount = source.getChildCount(sourceNode);
+            children = new ASTElem[childCount];
+            for (int i = 0; i < childCount; i++) {
+                children[i] = source.toElement(source.getChild(sourceNode, i));
+            }
+            source = null;
+        }
     }
 
     /**
@@ -105,7 +157,11 @@ public class AST extends ASTElem  {
      */
     public void addChild(ASTElem elem) {
         if (!isLeaf()) {
-            children.add(elem);
+            materialize();
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+            }
+            children[childCount++] = elem;
         } else {
             System.err.println("Warning! Attempting to add child to leaf AST node");
         }
@@ -141,19 +197,37 @@ public class AST extends ASTElem  {
         }
         sb.append(line);
 
+        materialize();
 
-        for (ASTElem i : children) {
-            sb.append("\n").append(i.pp(indent + 1));
+        for (int i = 0; i < childCount; i++) {
+            sb.append("\n").append(children[i].pp(indent + 1));
         }
         return sb.toString();
     }
 
     /**
-     * Slow method of obtaining the string represented by this AST. Use substring() whenever possible for minimum overhead.
+     * Slow method of obtaining the string represented by this AST, as it copies the text. Use {@link #getText()}
+     * whenever possible for minimum overhead.
      * @return The string
      */
     public String parseString() {
-        return this.originalString.substring(parsedFrom, parsedTo);
+        return this.originalString.subSequence(parsedFrom, parsedTo).toString();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public TextSlice getText() {
+        return new TextSlice(originalString, parsedFrom, parsedTo);
+    }
+
+    /**
+     * Returns the string that was parsed into this tree
+     * @return the original string
+     */
+    public CharSequence getOriginalString() {
+        return originalString;
     }
 
     /**
@@ -165,37 +239,52 @@ public class AST extends ASTElem  {
     }
 
     /**
-     * Returns a list of child nodes of the root node
+     * Returns a list of child nodes of the root node. The list is a read-only view of the children of this tree.
      * @return child nodes
      */
     public List<ASTElem> getChildren() {
-        return children;
+        return new Children();
+    }
+
+    /**
+     * Returns the number of child nodes of the root node
+     * @return number of children
+     */
+    public int getChildCount() {
+        return source != null ? source.getChildCount(sourceNode) : childCount;
     }
 
     /**
      * Returns a specific child node of this tree denoted by an index
      * @param i index
      * @return child at that index
+     * @throws IndexOutOfBoundsException if the index is out of range
      */
     public ASTElem getChild(int i) {
-        return children.get(i);
+        materialize();
+        Objects.checkIndex(i, childCount);
+        return children[i];
     }
 
     /**
      * Replaces a child node in this tree with a new one.
      * @param i index
      * @param newChild new child
+     * @throws IndexOutOfBoundsException if the index is out of range
      */
     public void setChild(int i, ASTElem newChild) {
-        children.set(i, newChild);
+        materialize();
+        Objects.checkIndex(i, childCount);
+        children[i] = newChild;
     }
 
     /**
      * Returns the last child of this tree.
      * @return last child
+     * @throws IndexOutOfBoundsException if this tree has no children
      */
     public ASTElem getLastChild() {
-        return children.get(children.size()-1);
+        return getChild(getChildCount() - 1);
     }
 
 
@@ -240,4 +329,20 @@ public class AST extends ASTElem  {
     public ParameterValue getOverriddenSemantics() {
         return overriddenSemantics;
     }
+
+    /**
+     * Read-only view of the children of this tree
+     */
+    private class Children extends AbstractList<ASTElem> implements RandomAccess {
+
+        @Override
+        public ASTElem get(int index) {
+            return getChild(index);
+        }
+
+        @Override
+        public int size() {
+            return getChildCount();
+        }
+    }
 }
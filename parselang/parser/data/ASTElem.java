@@ -20,6 +20,13 @@ public abstract class ASTElem implements ParameterValue {
      */
     public abstract String parseString();
 
+    /**
+     * Returns the text represented by this AST element without copying it where possible, for inspecting or comparing
+     * the text without creating a string
+     * @return the text
+     */
+    public abstract CharSequence getText();
+
     /**
      * Returns a deep copy of this AST element
      * @return the string
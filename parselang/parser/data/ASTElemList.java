@@ -5,16 +5,30 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * List of elements that can represent sections of parsed strings
+ * List of elements that can represent sections of parsed strings. The elements are stored in an array with free space
+ * at both ends, so that both adding and prepending an element take amortized constant time.
  */
 public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
 
-    private final List<ASTElem> nodeList = new ArrayList<>();
+    private static final ASTElem[] EMPTY = new ASTElem[0];
+
+    private ASTElem[] elements;
+    private int start = 0;
+    private int end = 0;
 
     /**
      * Default constructor
      */
     public ASTElemList() {
+        elements = EMPTY;
+    }
+
+    /**
+     * Creates a list with room for a known number of elements
+     * @param expectedSize number of elements that will be added
+     */
+    public ASTElemList(int expectedSize) {
+        elements = expectedSize == 0 ? EMPTY : new ASTElem[expectedSize];
     }
 
     /**
@@ -25,8 +39,8 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
         String prefix = new String(new char[indent]).replace("\0", "\t");
 
         StringBuilder sb = new StringBuilder(prefix).append("[");
-        for (ASTElem n : nodeList) {
-            sb.append("\n").append(n.pp(indent + 1));
+        for (int i = start; i < end; i++) {
+            sb.append("\n").append(elements[i].pp(indent + 1));
         }
         return sb.append("\n").append(prefix).append("]").toString();
     }
@@ -39,7 +53,7 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ASTElemList astElems = (ASTElemList) o;
-        return nodeList.equals(astElems.nodeList);
+        return Arrays.equals(elements, start, end, astElems.elements, astElems.start, astElems.end);
     }
 
     /**
@@ -47,7 +61,11 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(nodeList);
+        int res = 1;
+        for (int i = start; i < end; i++) {
+            res = 31 * res + elements[i].hashCode();
+        }
+        return res;
     }
 
     /**
@@ -56,19 +74,37 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
     @Override
     public String parseString() {
         StringBuilder sb = new StringBuilder();
-        for (ASTElem child : nodeList) {
-            sb.append(child.parseString());
+        for (int i = start; i < end; i++) {
+            sb.append(elements[i].parseString());
         }
         return sb.toString();
     }
 
+    /**
+     * Returns the texts of the elements after each other. Only a single element is returned without copying it.
+     * @return the text
+     */
+    @Override
+    public CharSequence getText() {
+        if (size() == 1) {
+            return elements[start].getText();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            sb.append(elements[i].getText());
+        }
+        return sb;
+    }
+
     /**
      * @inheritDoc
      */
     @Override
     public ASTElem copy() {
-        ASTElemList res = new ASTElemList();
-        nodeList.forEach(x -> res.nodeList.add(x.copy()));
+        ASTElemList res = new ASTElemList(size());
+        for (int i = start; i < end; i++) {
+            res.elements[res.end++] = elements[i].copy();
+        }
         return res;
     }
 
@@ -77,7 +113,22 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      */
     @Override
     public Iterator<ASTElem> iterator() {
-        return nodeList.iterator();
+        return new Iterator<>() {
+            private int next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public ASTElem next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                return elements[next++];
+            }
+        };
     }
 
     /**
@@ -85,7 +136,23 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      * @param child AST element to add
      */
     public void add(ASTElem child) {
-        nodeList.add(child);
+        if (end == elements.length) {
+            grow(0, 1);
+        }
+        elements[end++] = child;
+    }
+
+    /**
+     * Adds all elements of another list to the end of this list
+     * @param other list whose elements are added
+     */
+    public void addAll(ASTElemList other) {
+        int otherSize = other.size();
+        if (end + otherSize > elements.length) {
+            grow(0, otherSize);
+        }
+        System.arraycopy(other.elements, other.start, elements, end, otherSize);
+        end += otherSize;
     }
 
     /**
@@ -93,7 +160,7 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      * @return the size
      */
     public int size() {
-        return nodeList.size();
+        return end - start;
     }
 
     /**
@@ -101,7 +168,7 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      */
     @Override
     public String toString() {
-        String a = nodeList.stream().map(astElem -> {
+        String a = stream().map(astElem -> {
             if (astElem instanceof AST) {
                 return ((AST) astElem).getRoot().toString();
             } else if (astElem instanceof ASTElemList) {
@@ -117,7 +184,25 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      * @param listToAdd AST element to prepend
      */
     public void prepend(ASTElem listToAdd) {
-        nodeList.add(0, listToAdd);
+        if (start == 0) {
+            grow(1, 0);
+        }
+        elements[--start] = listToAdd;
+    }
+
+    /**
+     * Moves the elements to a larger array with at least the given amount of free space in front of and behind them.
+     * The free space at least doubles, so that a sequence of additions on the same side takes linear time.
+     */
+    private void grow(int minFront, int minBack) {
+        int size = size();
+        int front = minFront == 0 ? start : Math.max(minFront, Math.max(4, size));
+        int back = minBack == 0 ? elements.length - end : Math.max(minBack, Math.max(4, size));
+        ASTElem[] grown = new ASTElem[front + size + back];
+        System.arraycopy(elements, start, grown, front, size);
+        elements = grown;
+        start = front;
+        end = front + size;
     }
 
     /**
@@ -126,7 +211,8 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      * @throws IndexOutOfBoundsException if the index is out of range
      */
     public ASTElem get(int i) {
-        return nodeList.get(i);
+        Objects.checkIndex(i, size());
+        return elements[start + i];
     }
 
     /**
@@ -134,6 +220,6 @@ public class ASTElemList extends ASTElem implements Iterable<ASTElem> {
      * @return the stream
      */
     public Stream<ASTElem> stream() {
-        return nodeList.stream();
+        return Arrays.stream(elements, start, end);
     }
 }
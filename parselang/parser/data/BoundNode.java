@@ -14,7 +14,9 @@ public class BoundNode extends Node {
      */
     @Override
     public Node copy() {
-        return new BoundNode(nonTerm.copy(), name, lazy);
+        BoundNode res = new BoundNode(nonTerm.copy(), name, lazy);
+        res.symbol = symbol;
+        return res;
     }
 
     /**
@@ -50,6 +52,9 @@ public class BoundNode extends Node {
      */
     @Override
     public boolean equals(Object obj) {
+        if (obj instanceof BoundNode && SymbolTable.Symbol.comparable(symbol, ((BoundNode) obj).symbol)) {
+            return symbol == ((BoundNode) obj).symbol;
+        }
         return obj == this || (obj instanceof BoundNode && ((BoundNode)obj).getName().equals(name) && nonTerm.equals(((BoundNode)obj).getContent()) && lazy==((BoundNode) obj).lazy);
 
     }
@@ -0,0 +1,46 @@
+package parselang.parser.data;
+
+/**
+ * Node that parses the empty string and commits the parser to the alternative it occurs in, like the cut operator of
+ * PEG parsers. Once a cut is parsed, a failure later in the same alternative makes its nonterminal fail without trying
+ * the other alternatives; in a kleene star, it makes the star fail instead of stopping before the failed repetition.
+ * The parser can then also forget the results it memoized before the cut.
+ * <p>
+ * A cut adds no element to the AST. Since it parses the empty string, it is left out of the grammar analysis.
+ */
+public final class CutNode extends Node {
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Node copy() {
+        CutNode res = new CutNode();
+        res.symbol = symbol;
+        return res;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        return "^";
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CutNode;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int hashCode() {
+        return CutNode.class.hashCode();
+    }
+}
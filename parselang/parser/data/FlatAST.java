@@ -0,0 +1,438 @@
+package parselang.parser.data;
+
+import java.util.*;
+
+/**
+ * Compact encoding of an abstract syntax tree, for keeping the trees of large programs in memory. Instead of an object
+ * per tree node, every node is an index into parallel int arrays that hold the id of its root in a {@link SymbolTable}, the index of
+ * the rule that was applied in a table of the rules of the tree, the part of the original string it represents and
+ * where its children are. The indexes of the children of a node are stored next to each other, so that a child is
+ * found by index in constant time.
+ * <p>
+ * A tree is built bottom-up: the children of a node are added first and put on a stack of pending children with
+ * {@link #addPending(int)}, after which the node itself is added and takes its children from the stack. Nodes are never
+ * changed once added. This lets a parser record its results in a flat tree as it goes, including results that end up
+ * unused, after which {@link #compact(int)} keeps only the nodes of the final tree. {@link #toAST()} turns a flat tree
+ * into an ordinary tree whose nodes are only created once they are navigated into.
+ */
+public final class FlatAST {
+
+    /**
+     * Value of fields that a node does not have, such as the span of a list
+     */
+    public static final int NONE = -1;
+
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final CharSequence originalString;
+    private final SymbolTable symbols;
+    private final List<ParseRule> rules = new ArrayList<>();
+    private final Map<ParseRule, Integer> ruleIds = new IdentityHashMap<>();
+    private int[][] rootIds = new int[0][];
+    private int[][] ruleIndexes = new int[0][];
+    private int[][] parsedFrom = new int[0][];
+    private int[][] parsedTo = new int[0][];
+    private int[][] firstChild = new int[0][];
+    private int[][] childNodes = new int[0][];
+    private int size = 0;
+    private int childSize = 0;
+    private int[] pending = new int[16];
+    private int pendingSize = 0;
+    private boolean complete = false;
+
+    /**
+     * Creates an empty tree. The nodes are stored in segments of fixed size, so that the tree grows without copying.
+     * @param originalString string that is parsed into the tree
+     * @param symbols table in which the roots of the nodes are interned, such as the table of the grammar they are
+     *                parsed with
+     */
+    public FlatAST(CharSequence originalString, SymbolTable symbols) {
+        this.originalString = originalString;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Encodes a tree. Semantics overridden by the interpreter are not part of the encoding.
+     * @param tree tree to encode
+     * @param originalString string that was parsed into the tree
+     * @param symbols table in which the roots of the nodes are interned
+     * @return the encoded tree, to which no nodes can be added
+     */
+    public static FlatAST encode(ASTElem tree, CharSequence originalString, SymbolTable symbols) {
+        FlatAST res = new FlatAST(originalString, symbols);
+        res.encode(tree);
+        res.complete();
+        return res;
+    }
+
+    /**
+     * Encodes a tree
+     * @param tree tree to encode
+     * @param symbols table in which the roots of the nodes are interned
+     * @return the encoded tree, to which no nodes can be added
+     */
+    public static FlatAST encode(AST tree, SymbolTable symbols) {
+        return encode(tree, tree.getOriginalString(), symbols);
+    }
+
+    private int encode(ASTElem elem) {
+        int mark = pending();
+        if (elem instanceof AST) {
+            AST tree = (AST) elem;
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                addPending(encode(tree.getChild(i)));
+            }
+            return add(tree.getRoot(), tree.getRule(), tree.getParsedFrom(), tree.getParsedTo(), mark);
+        }
+        for (ASTElem element : (ASTElemList) elem) {
+            addPending(encode(element));
+        }
+        return addList(mark);
+    }
+
+    /**
+     * Returns the number of pending children, to be used as the mark from which the children of a node are taken
+     * @return the number of pending children
+     */
+    public int pending() {
+        return pendingSize;
+    }
+
+    /**
+     * Puts a node on the stack of pending children, so it becomes a child of the next node that is added
+     * @param node index of the node
+     */
+    public void addPending(int node) {
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(16, pendingSize * 2));
+        }
+        pending[pendingSize++] = node;
+    }
+
+    /**
+     * Returns the node that was put on the stack of pending children last
+     * @return index of the node
+     * @throws ArrayIndexOutOfBoundsException if there are no pending children
+     */
+    public int lastPending() {
+        return pending[pendingSize - 1];
+    }
+
+    /**
+     * Removes pending children without adding them to a node, such as the children of a rule that failed to parse
+     * @param mark number of pending children to keep
+     */
+    public void dropPending(int mark) {
+        pendingSize = mark;
+    }
+
+    /**
+     * Adds a tree node, whose children are the children that became pending after a mark
+     * @param root root of the node (e.g. a nonterminal or terminal)
+     * @param rule rule applied at the node, or null
+     * @param from start index (inclusive) in the original string that is represented by the node
+     * @param to end index (exclusive) in the original string that is represented by the node
+     * @param mark number of pending children before the first child of the node was added
+     * @return index of the added node
+     * @throws IllegalStateException if the tree is complete, because it was encoded or compacted
+     */
+    public int add(Node root, ParseRule rule, int from, int to, int mark) {
+        return append(symbols.intern(root), rule == null ? NONE : ruleIndex(rule), from, to, mark);
+    }
+
+    /**
+     * Adds a node that represents a list of elements, whose elements are the children that became pending after a mark
+     * @param mark number of pending children before the first element of the list was added
+     * @return index of the added node
+     * @throws IllegalStateException if the tree is complete, because it was encoded or compacted
+     */
+    public int addList(int mark) {
+        return append(NONE, NONE, NONE, NONE, mark);
+    }
+
+    private int ruleIndex(ParseRule rule) {
+        Integer index = ruleIds.get(rule);
+        if (index == null) {
+            index = rules.size();
+            rules.add(rule);
+            ruleIds.put(rule, index);
+        }
+        return index;
+    }
+
+    private int append(int rootId, int ruleIndex, int from, int to, int mark) {
+        if (complete) {
+            throw new IllegalStateException("No nodes can be added to a complete tree");
+        }
+        int segment = size >>> SEGMENT_BITS;
+        int offset = size & SEGMENT_MASK;
+        if (segment == rootIds.length) {
+            rootIds = Arrays.copyOf(rootIds, segment + 1);
+            ruleIndexes = Arrays.copyOf(ruleIndexes, segment + 1);
+            parsedFrom = Arrays.copyOf(parsedFrom, segment + 1);
+            parsedTo = Arrays.copyOf(parsedTo, segment + 1);
+            firstChild = Arrays.copyOf(firstChild, segment + 1);
+            rootIds[segment] = new int[SEGMENT_SIZE];
+            ruleIndexes[segment] = new int[SEGMENT_SIZE];
+            parsedFrom[segment] = new int[SEGMENT_SIZE];
+            parsedTo[segment] = new int[SEGMENT_SIZE];
+            firstChild[segment] = new int[SEGMENT_SIZE];
+        }
+        rootIds[segment][offset] = rootId;
+        ruleIndexes[segment][offset] = ruleIndex;
+        parsedFrom[segment][offset] = from;
+        parsedTo[segment][offset] = to;
+        firstChild[segment][offset] = childSize;
+        for (int i = mark; i < pendingSize; i++) {
+            if ((childSize >>> SEGMENT_BITS) == childNodes.length) {
+                childNodes = Arrays.copyOf(childNodes, childNodes.length + 1);
+                childNodes[childNodes.length - 1] = new int[SEGMENT_SIZE];
+            }
+            childNodes[childSize >>> SEGMENT_BITS][childSize & SEGMENT_MASK] = pending[i];
+            childSize++;
+        }
+        pendingSize = mark;
+        return size++;
+    }
+
+    /**
+     * Returns a tree with only the nodes that can be reached from a node, such as the nodes of a successful parse in
+     * the tree that a parser recorded all its results in
+     * @param node index of the node that becomes the root
+     * @return the compacted tree, to which no nodes can be added
+     */
+    public FlatAST compact(int node) {
+        int[] moved = new int[size];
+        Arrays.fill(moved, NONE);
+        FlatAST res = new FlatAST(originalString, symbols);
+        res.copy(this, node, moved);
+        res.complete();
+        return res;
+    }
+
+    private int copy(FlatAST from, int node, int[] moved) {
+        if (moved[node] == NONE) {
+            int mark = pending();
+            for (int i = 0; i < from.getChildCount(node); i++) {
+                addPending(copy(from, from.getChild(node, i), moved));
+            }
+            ParseRule rule = from.getRule(node);
+            moved[node] = append(from.getRootId(node), rule == null ? NONE : ruleIndex(rule), from.getParsedFrom(node), from.getParsedTo(node), mark);
+        }
+        return moved[node];
+    }
+
+    /**
+     * Shrinks the last segments to what is used, after which no nodes can be added anymore
+     */
+    private void complete() {
+        complete = true;
+        pending = null;
+        int used = size & SEGMENT_MASK;
+        if (used != 0) {
+            int last = rootIds.length - 1;
+            rootIds[last] = Arrays.copyOf(rootIds[last], used);
+            ruleIndexes[last] = Arrays.copyOf(ruleIndexes[last], used);
+            parsedFrom[last] = Arrays.copyOf(parsedFrom[last], used);
+            parsedTo[last] = Arrays.copyOf(parsedTo[last], used);
+            firstChild[last] = Arrays.copyOf(firstChild[last], used);
+        }
+        int usedChildren = childSize & SEGMENT_MASK;
+        if (usedChildren != 0) {
+            int last = childNodes.length - 1;
+            childNodes[last] = Arrays.copyOf(childNodes[last], usedChildren);
+        }
+    }
+
+    private static int get(int[][] segments, int index) {
+        return segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    /**
+     * Returns the number of nodes in this tree
+     * @return the number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of the root of this tree, which is the node that was added last
+     * @return index of the root
+     * @throws IllegalStateException if this tree is empty
+     */
+    public int root() {
+        if (size == 0) {
+            throw new IllegalStateException("Tree is empty");
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the string that was parsed into this tree
+     * @return the original string
+     */
+    public CharSequence getOriginalString() {
+        return originalString;
+    }
+
+    /**
+     * Returns the table in which the roots of the nodes are interned
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns whether a node represents a list of elements rather than a tree
+     * @param node index of the node
+     * @return true iff the node is a list
+     */
+    public boolean isList(int node) {
+        return getRootId(node) == NONE;
+    }
+
+    /**
+     * Returns the id of the root of a node in the symbol table of this tree, by which roots can be compared without
+     * looking them up
+     * @param node index of the node
+     * @return the id, or {@link #NONE} if the node is a list
+     */
+    public int getRootId(int node) {
+        return get(rootIds, node);
+    }
+
+    /**
+     * Returns the root of a node (e.g. a nonterminal or terminal)
+     * @param node index of the node
+     * @return the root, or null if the node is a list
+     */
+    public Node getRoot(int node) {
+        int id = getRootId(node);
+        return id == NONE ? null : symbols.get(id);
+    }
+
+    /**
+     * Returns the index of the rule applied at a node in the table of rules of this tree. Nodes at which the same rule
+     * was applied share the index.
+     * @param node index of the node
+     * @return the index, or {@link #NONE} if no rule was applied
+     */
+    public int getRuleIndex(int node) {
+        return get(ruleIndexes, node);
+    }
+
+    /**
+     * Returns the rule applied at a node
+     * @param node index of the node
+     * @return the rule, or null if no rule was applied
+     */
+    public ParseRule getRule(int node) {
+        int index = getRuleIndex(node);
+        return index == NONE ? null : rules.get(index);
+    }
+
+    /**
+     * Returns the start index (inclusive) in the original string that is represented by a node
+     * @param node index of the node
+     * @return start index, or {@link #NONE} if the node is a list
+     */
+    public int getParsedFrom(int node) {
+        return get(parsedFrom, node);
+    }
+
+    /**
+     * Returns the end index (exclusive) in the original string that is represented by a node
+     * @param node index of the node
+     * @return end index, or {@link #NONE} if the node is a list
+     */
+    public int getParsedTo(int node) {
+        return get(parsedTo, node);
+    }
+
+    /**
+     * Returns the string represented by a node
+     * @param node index of the node
+     * @return the string
+     */
+    public String parseString(int node) {
+        return getText(node).toString();
+    }
+
+    /**
+     * Returns the text represented by a node, without copying it unless the node is a list of several elements
+     * @param node index of the node
+     * @return the text
+     */
+    public CharSequence getText(int node) {
+        if (!isList(node)) {
+            return new TextSlice(originalString, getParsedFrom(node), getParsedTo(node));
+        }
+        if (getChildCount(node) == 1) {
+            return getText(getChild(node, 0));
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < getChildCount(node); i++) {
+            sb.append(getText(getChild(node, i)));
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the number of children of a node
+     * @param node index of the node
+     * @return number of children
+     */
+    public int getChildCount(int node) {
+        return (node + 1 < size ? get(firstChild, node + 1) : childSize) - get(firstChild, node);
+    }
+
+    /**
+     * Returns a specific child of a node denoted by an index
+     * @param node index of the node
+     * @param i index of the child
+     * @return index of the child node
+     * @throws IndexOutOfBoundsException if the node has no child with that index
+     */
+    public int getChild(int node, int i) {
+        return get(childNodes, get(firstChild, node) + Objects.checkIndex(i, getChildCount(node)));
+    }
+
+    /**
+     * Turns this tree into an ordinary tree. The nodes of the ordinary tree are created when they are first navigated
+     * into, so parts of the tree that are never inspected cost no objects.
+     * @return the tree
+     * @throws ClassCastException if the root of this tree is a list
+     */
+    public AST toAST() {
+        return (AST) toElement(root());
+    }
+
+    /**
+     * Turns a node into an ordinary tree or list, whose children are created when they are first navigated into
+     * @param node index of the node
+     * @return the tree or list
+     */
+    public ASTElem toElement(int node) {
+        if (!isList(node)) {
+            return new AST(this, node);
+        }
+        int children = getChildCount(node);
+        ASTElemList res = new ASTElemList(children);
+        for (int i = 0; i < children; i++) {
+            res.add(toElement(getChild(node, i)));
+        }
+        return res;
+    }
+
+    /**
+     * Pretty prints the tree
+     */
+    @Override
+    public String toString() {
+        return toElement(root()).toString();
+    }
+}
@@ -4,6 +4,12 @@ package parselang.parser.data;
  * Any terminal, nonterminal, kleene star wrapper or bound wrapper
  */
 public abstract class Node {
+
+    /**
+     * Id of this node in the first symbol table it was interned in, or null if it was never interned
+     */
+    SymbolTable.Symbol symbol;
+
     /**
      * Returns a deep copy of this node.
      * @return a deep copy
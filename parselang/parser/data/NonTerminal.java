@@ -18,7 +18,9 @@ public final class NonTerminal extends Node {
      */
     @Override
     public Node copy() {
-        return new NonTerminal(name, status);
+        NonTerminal res = new NonTerminal(name, status);
+        res.symbol = symbol;
+        return res;
     }
 
     private final String name;
@@ -59,6 +61,10 @@ public final class NonTerminal extends Node {
         if (!(other instanceof NonTerminal)) {
             return false;
         }
+        SymbolTable.Symbol otherSymbol = ((NonTerminal) other).symbol;
+        if (SymbolTable.Symbol.comparable(symbol, otherSymbol)) {
+            return symbol == otherSymbol;
+        }
         return name.equals(((NonTerminal) other).getName());
     }
 
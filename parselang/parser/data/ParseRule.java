@@ -98,7 +98,8 @@ public class ParseRule {
     }
 
     /**
-     * converts this rule in an equivalent list of rules that do not contain kleene star nodes.
+     * converts this rule in an equivalent list of rules that do not contain kleene star nodes. Cut nodes are left out,
+     * as they parse the empty string.
      * @return an equivalent list of rules without kleene star
      */
     public List<ParseRule> convertStarNodes() {
@@ -134,6 +135,7 @@ public class ParseRule {
                 toConsider.push(((BoundNode) rhsNode).getContent());
             }
         }
+        copy.rhs.removeIf(node -> node instanceof CutNode);
         res.add(copy);
         return res;
 
@@ -9,13 +9,16 @@ import java.util.List;
 public class StarNode extends Node {
 
     private final Node[] inner;
+    private int hash;
 
     /**
      * @inheritDoc
      */
     @Override
     public Node copy() {
-        return new StarNode(Arrays.stream(inner).map(Node::copy).toArray(Node[]::new));
+        StarNode res = new StarNode(Arrays.stream(inner).map(Node::copy).toArray(Node[]::new));
+        res.symbol = symbol;
+        return res;
     }
 
     /**
@@ -62,7 +65,14 @@ public class StarNode extends Node {
      */
     @Override
     public boolean equals(Object obj) {
-        return obj instanceof StarNode && (obj == this || Arrays.equals(((StarNode) obj).inner, inner));
+        if (!(obj instanceof StarNode)) {
+            return false;
+        }
+        SymbolTable.Symbol otherSymbol = ((StarNode) obj).symbol;
+        if (SymbolTable.Symbol.comparable(symbol, otherSymbol)) {
+            return symbol == otherSymbol;
+        }
+        return obj == this || Arrays.equals(((StarNode) obj).inner, inner);
     }
 
     /**
@@ -70,7 +80,12 @@ public class StarNode extends Node {
      */
     @Override
     public int hashCode() {
-        return Arrays.hashCode(inner);
+        int res = hash;
+        if (res == 0) {
+            res = Arrays.hashCode(inner);
+            hash = res;
+        }
+        return res;
     }
 
 
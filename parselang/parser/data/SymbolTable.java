@@ -0,0 +1,136 @@
+package parselang.parser.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table that assigns every distinct node of a grammar a dense integer id. Equal nodes share an id, so once a node is
+ * interned it can be compared and hashed by its id alone. A table can extend another one that no longer changes, such
+ * as the table of a base grammar: it hands out the ids of that table for the nodes in it, and ids after them for the
+ * nodes of a single program. Those nodes are forgotten along with the extending table, so the table of the base
+ * grammar does not grow with every program that is parsed.
+ * <p>
+ * A node remembers its symbol in the table that interned it last, so interning it again in that table or a table
+ * extending it costs no lookup. A node shared by several programs that is not in the base table moves to the table
+ * of each program that interns it.
+ * <p>
+ * A table is not thread-safe, but any number of tables on different threads can extend the same table.
+ */
+public final class SymbolTable {
+
+    /**
+     * Id of a node in a table. Equal nodes interned in the same table share their symbol.
+     */
+    static final class Symbol {
+
+        private final SymbolTable table;
+        private final int id;
+
+        private Symbol(SymbolTable table, int id) {
+            this.table = table;
+            this.id = id;
+        }
+
+        /**
+         * Compares the symbols of two nodes
+         * @return whether both nodes are interned in the same table, so that their symbols tell whether they are equal
+         */
+        static boolean comparable(Symbol a, Symbol b) {
+            return a != null && b != null && a.table == b.table;
+        }
+    }
+
+    private final SymbolTable base;
+    private final int offset;
+    private final Map<Node, Symbol> symbols = new HashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Creates an empty table
+     */
+    public SymbolTable() {
+        this.base = null;
+        this.offset = 0;
+    }
+
+    /**
+     * Creates a table that extends another one
+     * @param base table whose ids are kept, which must not change anymore
+     */
+    public SymbolTable(SymbolTable base) {
+        this.base = base;
+        this.offset = base.size();
+    }
+
+    /**
+     * Interns a node, assigning it an id if no equal node was interned in this table or the table it extends before.
+     * The node remembers its symbol in this table.
+     * @param node node to intern
+     * @return the id of the node
+     */
+    public int intern(Node node) {
+        Symbol known = node.symbol;
+        if (known != null) {
+            for (SymbolTable table = this; table != null; table = table.base) {
+                if (known.table == table) {
+                    return known.id;
+                }
+            }
+        }
+        if (node instanceof StarNode) {
+            ((StarNode) node).contents().forEach(this::intern);
+        } else if (node instanceof BoundNode) {
+            intern(((BoundNode) node).getContent());
+        }
+        Symbol symbol = find(node);
+        if (symbol == null) {
+            symbol = new Symbol(this, size());
+            symbols.put(node, symbol);
+            nodes.add(node);
+        }
+        node.symbol = symbol;
+        return symbol.id;
+    }
+
+    private Symbol find(Node node) {
+        for (SymbolTable table = this; table != null; table = table.base) {
+            Symbol symbol = table.symbols.get(node);
+            if (symbol != null) {
+                return symbol;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Interns the left hand side and every node in the right hand side of a parse rule.
+     * @param rule rule whose nodes to intern
+     */
+    public void intern(ParseRule rule) {
+        intern(rule.getLHS());
+        for (Node node : rule.getRHS()) {
+            intern(node);
+        }
+    }
+
+    /**
+     * Returns the node that was interned with an id
+     * @param id the id
+     * @return the node
+     * @throws IndexOutOfBoundsException if no node has this id
+     */
+    public Node get(int id) {
+        return id < offset ? base.get(id) : nodes.get(id - offset);
+    }
+
+    /**
+     * Returns the number of interned nodes, including those of the table this table extends, which is one higher than
+     * the largest id handed out.
+     * @return the number of interned nodes
+     */
+    public int size() {
+        return offset + nodes.size();
+    }
+}
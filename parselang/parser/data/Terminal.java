@@ -31,6 +31,10 @@ public class Terminal extends Node {
         if (!(obj instanceof Terminal)) {
             return false;
         }
+        SymbolTable.Symbol otherSymbol = ((Terminal) obj).symbol;
+        if (SymbolTable.Symbol.comparable(symbol, otherSymbol)) {
+            return symbol == otherSymbol;
+        }
         return value.equals(((Terminal) obj).value);
     }
 
@@ -55,6 +59,8 @@ public class Terminal extends Node {
      */
     @Override
     public Node copy() {
-        return new Terminal(value);
+        Terminal res = new Terminal(value);
+        res.symbol = symbol;
+        return res;
     }
 }
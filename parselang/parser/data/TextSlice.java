@@ -0,0 +1,62 @@
+package parselang.parser.data;
+
+import java.util.Objects;
+
+/**
+ * Part of a character sequence, such as the text represented by an AST. A slice is a view: no characters are copied
+ * until {@link #toString()} is called. Like other character sequences, slices do not define equality, so compare them
+ * with {@link String#contentEquals(CharSequence)}.
+ */
+public final class TextSlice implements CharSequence {
+
+    private final CharSequence source;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a slice of a character sequence
+     * @param source sequence to view
+     * @param from start index (inclusive) in the sequence
+     * @param to end index (exclusive) in the sequence
+     * @throws IndexOutOfBoundsException if the indexes do not denote a part of the sequence
+     */
+    public TextSlice(CharSequence source, int from, int to) {
+        Objects.checkFromToIndex(from, to, source.length());
+        this.source = source;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int length() {
+        return to - from;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public char charAt(int index) {
+        return source.charAt(from + Objects.checkIndex(index, to - from));
+    }
+
+    /**
+     * Returns a slice of this slice, without copying any characters
+     */
+    @Override
+    public TextSlice subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, to - from);
+        return new TextSlice(source, from + start, from + end);
+    }
+
+    /**
+     * Copies the characters of this slice into a string
+     */
+    @Override
+    public String toString() {
+        return source.subSequence(from, to).toString();
+    }
+}
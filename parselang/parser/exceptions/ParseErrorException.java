@@ -10,7 +10,7 @@ public class ParseErrorException extends Exception {
      * @param originalString original string being parsed
      * @param index index of the original string at which no alternative is found.
      */
-    public ParseErrorException(String originalString, int index) {
+    public ParseErrorException(CharSequence originalString, int index) {
         super("No alternative at index " + findRowColumn(originalString, index) + " at " + whichCharacter(originalString, index));
     }
 
@@ -21,7 +21,7 @@ public class ParseErrorException extends Exception {
     public ParseErrorException() {
     }
 
-    private static String findRowColumn(String originalString, int index) {
+    private static String findRowColumn(CharSequence originalString, int index) {
         int row = 1;
         int otherchars = 1;
         for(int i = 0; i < index-1; i++) {
@@ -35,8 +35,8 @@ public class ParseErrorException extends Exception {
         return "(" + row + ":" + otherchars + ")";
     }
 
-    private static String whichCharacter(String originalString, int index) {
-        if (originalString.isEmpty()) {
+    private static String whichCharacter(CharSequence originalString, int index) {
+        if (originalString.length() == 0) {
             return "start of input";
         } else if (index == originalString.length()) {
             return "end of input";
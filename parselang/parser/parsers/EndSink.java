@@ -0,0 +1,112 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseResult;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.*;
+
+/**
+ * Sink for recognizing an input, which keeps no results and memoizes only where they end
+ */
+class EndSink implements ResultSink {
+
+    private final MemoTable ends;
+
+    /**
+     * Creates a sink
+     * @param ends empty table that memoizes only end positions
+     */
+    EndSink(MemoTable ends) {
+        this.ends = ends;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoized(int position, Node node, ParseRuleStorage storage) {
+        return ends.getEnd(position, node, storage);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoizedRepetitions(int position, StarNode star, ParseRuleStorage storage) {
+        return ends.getEnd(position, star, storage);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void memoize(int position, Node node, int end, long version) {
+        ends.putEnd(position, node, end, version);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int pending() {
+        return 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void dropPending(int mark) {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addTerminal(Terminal terminal, int from, int to) {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRule(ParseRule rule, int from, int to, int mark) {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRepetition(int mark) {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addStar(int mark, int end) {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public AST partialTree(NonTerminal lhs, int mark) {
+        throw new UnsupportedOperationException("A recognized input has no trees");
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ParseResult result(int end) {
+        throw new UnsupportedOperationException("A recognized input has no trees");
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public MemoTable getMemo() {
+        return ends;
+    }
+}
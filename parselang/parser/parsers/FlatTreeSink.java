@@ -0,0 +1,142 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseResult;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.*;
+
+/**
+ * Sink that records every result in a flat tree, whose stack of pending children holds the pending results
+ */
+class FlatTreeSink implements ResultSink {
+
+    private final FlatAST tree;
+    private final MemoTable memo;
+
+    /**
+     * Creates a sink without pending results
+     * @param tree empty tree to record results in
+     * @param memo empty table to memoize results in
+     */
+    FlatTreeSink(FlatAST tree, MemoTable memo) {
+        this.tree = tree;
+        this.memo = memo;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoized(int position, Node node, ParseRuleStorage storage) {
+        ParseResult memoized = memo.get(position, node, storage);
+        if (memoized == null) {
+            return MemoTable.NOT_MEMOIZED;
+        } else if (memoized == ParseResult.FAIL) {
+            return MemoTable.FAILED;
+        }
+        tree.addPending(memoized.getNode());
+        return memoized.getRemainingIndex();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoizedRepetitions(int position, StarNode star, ParseRuleStorage storage) {
+        ParseResult memoized = memo.get(position, star, storage);
+        if (memoized == null) {
+            return MemoTable.NOT_MEMOIZED;
+        } else if (memoized == ParseResult.FAIL) {
+            return MemoTable.FAILED;
+        }
+        for (int i = 0; i < tree.getChildCount(memoized.getNode()); i++) {
+            tree.addPending(tree.getChild(memoized.getNode(), i));
+        }
+        return memoized.getRemainingIndex();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void memoize(int position, Node node, int end, long version) {
+        memo.put(position, node, end == MemoTable.FAILED ? ParseResult.FAIL : result(end), version);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int pending() {
+        return tree.pending();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void dropPending(int mark) {
+        tree.dropPending(mark);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addTerminal(Terminal terminal, int from, int to) {
+        tree.addPending(tree.add(terminal, null, from, to, tree.pending()));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRule(ParseRule rule, int from, int to, int mark) {
+        tree.addPending(tree.add(rule.getLHS(), rule, from, to, mark));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRepetition(int mark) {
+        if (tree.pending() - mark > 1) {
+            tree.addPending(tree.addList(mark));
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addStar(int mark, int end) {
+        tree.addPending(tree.addList(mark));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public AST partialTree(NonTerminal lhs, int mark) {
+        int partial = tree.add(lhs, null, 0, 0, mark);
+        for (int i = 0; i < tree.getChildCount(partial); i++) {
+            tree.addPending(tree.getChild(partial, i));
+        }
+        return (AST) tree.toElement(partial);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ParseResult result(int end) {
+        return new ParseResult(tree.getOriginalString(), tree, tree.lastPending(), end);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public MemoTable getMemo() {
+        return memo;
+    }
+}
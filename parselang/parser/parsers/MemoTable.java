@@ -0,0 +1,281 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseResult;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.Node;
+import parselang.parser.data.SymbolTable;
+
+import java.util.Arrays;
+
+/**
+ * Packrat memo that maps (position, node) pairs to parse results. Entries are stored in an open-addressing table with
+ * primitive keys, so a lookup is a hash of two ints and a few array reads. Every entry records the grammar version it
+ * was computed under, so entries that a grammar mutation or rollback invalidated are ignored and eventually
+ * overwritten. Entries before a position that the parse committed to with {@link #evictBefore(int)} are dropped the
+ * next time the table is full. A table created with {@link #MemoTable(SymbolTable, int, boolean)} memoizes only the
+ * end position of every parse, for parses that do not build trees.
+ */
+public class MemoTable {
+
+    /**
+     * End position memoized for a parse that failed
+     */
+    public static final int FAILED = -1;
+
+    /**
+     * End position returned when nothing valid is memoized
+     */
+    public static final int NOT_MEMOIZED = -2;
+
+    private static final long EMPTY = -1L;
+    private static final float MAX_LOAD = 0.5f;
+
+    private final SymbolTable symbols;
+    private long[] keys;
+    private ParseResult[] values;
+    private int[] ends;
+    private long[] versions;
+    private int size;
+    private int evictedBefore = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long invalidations = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a new memo table
+     * @param symbols table that assigns the ids of the memoized nodes, which is the table of the parse rule storage
+     * @param initialCapacity number of entries the table can hold before it has to grow
+     */
+    public MemoTable(SymbolTable symbols, int initialCapacity) {
+        this(symbols, initialCapacity, false);
+    }
+
+    /**
+     * Creates a new memo table
+     * @param symbols table that assigns the ids of the memoized nodes, which is the table of the parse rule storage
+     * @param initialCapacity number of entries the table can hold before it has to grow
+     * @param endsOnly true to memoize only end positions, with {@link #getEnd} and {@link #putEnd}, instead of results
+     */
+    public MemoTable(SymbolTable symbols, int initialCapacity, boolean endsOnly) {
+        this.symbols = symbols;
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (initialCapacity / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        if (endsOnly) {
+            ends = new int[capacity];
+        } else {
+            values = new ParseResult[capacity];
+        }
+        versions = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns the result memoized for a node at a position
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param storage grammar that decides whether the result is still valid for the grammar version it was computed under
+     * @return the memoized result, or null if there is none or it is no longer valid
+     */
+    public ParseResult get(int position, Node node, ParseRuleStorage storage) {
+        int i = find(position, node, storage);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * Returns the end position memoized for a node at a position, in a table that memoizes only end positions
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param storage grammar that decides whether the result is still valid for the grammar version it was computed under
+     * @return the end position, {@link #FAILED} if the parse failed, or {@link #NOT_MEMOIZED} if there is no result or
+     * it is no longer valid
+     */
+    public int getEnd(int position, Node node, ParseRuleStorage storage) {
+        int i = find(position, node, storage);
+        return i < 0 ? NOT_MEMOIZED : ends[i];
+    }
+
+    private int find(int position, Node node, ParseRuleStorage storage) {
+        long key = key(position, node);
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                if (storage.isValid(node, versions[i])) {
+                    hits++;
+                    return i;
+                }
+                invalidations++;
+                return -1;
+            }
+        }
+        misses++;
+        return -1;
+    }
+
+    /**
+     * Memoizes the result of parsing a node at a position, replacing any earlier result.
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param result result of the parse
+     * @param version grammar version the result was computed under
+     */
+    public void put(int position, Node node, ParseResult result, long version) {
+        if (size + 1 > keys.length * MAX_LOAD) {
+            grow();
+        }
+        if (insert(key(position, node), result, 0, version)) {
+            size++;
+        }
+    }
+
+    /**
+     * Memoizes the end position of parsing a node at a position in a table that memoizes only end positions,
+     * replacing any earlier end position.
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param end index of the first character after the parsed part, or {@link #FAILED}
+     * @param version grammar version the result was computed under
+     */
+    public void putEnd(int position, Node node, int end, long version) {
+        if (size + 1 > keys.length * MAX_LOAD) {
+            grow();
+        }
+        if (insert(key(position, node), null, end, version)) {
+            size++;
+        }
+    }
+
+    /**
+     * Evicts the results memoized before a position, because the parse will not backtrack to it. The results are
+     * dropped when the table is full, instead of growing it if that frees enough room, so evicting costs no more than
+     * growing does.
+     * @param position index in the parsed string before which results are no longer needed
+     */
+    public void evictBefore(int position) {
+        evictedBefore = Math.max(evictedBefore, position);
+    }
+
+    /**
+     * Returns the number of memoized results
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups that found a valid result
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no result
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of lookups that found a result that was no longer valid
+     * @return the number of invalidated results that were looked up
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the number of results that were dropped because they were memoized before a position passed to
+     * {@link #evictBefore(int)}
+     * @return the number of evicted results
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes all memoized results
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        if (values != null) {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+        evictedBefore = 0;
+    }
+
+    private boolean insert(long key, ParseResult result, int end, long version) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        boolean added = true;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                added = false;
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (values != null) {
+            values[i] = result;
+        } else {
+            ends[i] = end;
+        }
+        versions[i] = version;
+        return added;
+    }
+
+    private void grow() {
+        int kept = size;
+        if (evictedBefore > 0) {
+            kept = 0;
+            for (long key : keys) {
+                if (key != EMPTY && position(key) >= evictedBefore) {
+                    kept++;
+                }
+            }
+        }
+        resize(kept + 1 > keys.length * MAX_LOAD / 2 ? keys.length << 1 : keys.length);
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        ParseResult[] oldValues = values;
+        int[] oldEnds = ends;
+        long[] oldVersions = versions;
+        keys = new long[newCapacity];
+        values = oldValues == null ? null : new ParseResult[newCapacity];
+        ends = oldEnds == null ? null : new int[newCapacity];
+        versions = new long[newCapacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            if (position(oldKeys[i]) >= evictedBefore) {
+                insert(oldKeys[i], oldValues == null ? null : oldValues[i], oldEnds == null ? 0 : oldEnds[i], oldVersions[i]);
+                size++;
+            } else {
+                evictions++;
+            }
+        }
+    }
+
+    private long key(int position, Node node) {
+        return ((long) position << 32) | symbols.intern(node);
+    }
+
+    private static int position(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,63 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseMetrics;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.SymbolTable;
+
+/**
+ * State of a single invocation of a parser. Parsers keep everything that belongs to one input here instead of in their
+ * own fields, so one parser can parse several inputs at the same time.
+ */
+class ParseContext {
+
+    final CharSequence input;
+    final ParseRuleStorage storage;
+    final SymbolTable symbols;
+    final ResultSink trees;
+    final ResultSink ends;
+    final ParseTrace trace;
+    final ParseMetrics.Recorder metrics;
+    int farthestParse = 0;
+    boolean cut = false;
+    long firstTraceEvent = 0;
+    long allocatedBefore = 0;
+
+    /**
+     * Statistics the storage recorded in before the parse, which it records in again afterwards
+     */
+    ParseMetrics storageMetrics = null;
+
+    /**
+     * Sink of the results that are being parsed. While the input is only recognized, this is the sink of trees for the
+     * nodes that change the grammar, and the sink of ends for all others.
+     */
+    ResultSink sink;
+
+    /**
+     * Ids of the nonterminals that the parser treats specially, in the symbol table of the storage
+     */
+    int variable;
+    int nonTerminal;
+    int declaration;
+    int declarationContent;
+
+    /**
+     * Creates the state of a parse that has not started yet
+     * @param input String to parse
+     * @param storage storage of parse rules that is used and modified by this parse
+     * @param trees sink that builds the trees of this parse
+     * @param ends sink that memoizes the end positions of this parse if it only recognizes its input, or null
+     * @param trace trace to record parse events in, or null if they are not recorded
+     * @param metrics recorder that counts the events of this parse, or null if they are not counted
+     */
+    ParseContext(CharSequence input, ParseRuleStorage storage, ResultSink trees, ResultSink ends, ParseTrace trace, ParseMetrics.Recorder metrics) {
+        this.input = input;
+        this.storage = storage;
+        this.symbols = storage.getSymbols();
+        this.trees = trees;
+        this.ends = ends;
+        this.trace = trace;
+        this.metrics = metrics;
+        this.sink = ends == null ? trees : ends;
+    }
+}
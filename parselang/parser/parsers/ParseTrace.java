@@ -0,0 +1,200 @@
+package parselang.parser.parsers;
+
+import parselang.parser.data.SymbolTable;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Ring buffer of parse events. Every event records which node was parsed at which position, where the parse ended and
+ * whether the result came from the memo. Nodes are recorded by their id in the symbol table of the storage that was
+ * parsed with, so the buffer holds only primitive arrays. It is allocated once and overwrites its oldest events when
+ * it is full, so recording an event costs a few array writes and tracing can stay enabled. A trace created with
+ * {@link #growing(int)} grows instead, for when every event has to be kept. The events are turned into readable
+ * text afterwards by {@link #render(CharSequence, SymbolTable, long, PrintStream)}. A trace is not thread-safe, so
+ * parses on different threads should record into different traces.
+ */
+public final class ParseTrace {
+
+    /**
+     * End position of an event whose parse failed.
+     */
+    public static final int FAILED = -1;
+
+    /**
+     * End position of an event whose parse has not finished yet.
+     */
+    public static final int PENDING = -2;
+
+    /**
+     * Number of characters of the remaining input that {@link #render(CharSequence, SymbolTable, long, PrintStream)}
+     * prints after every node
+     */
+    public static final int PREVIEW_LENGTH = 100;
+
+    private int[] nodeIds;
+    private int[] positions;
+    private int[] ends;
+    private boolean[] memoHits;
+    private boolean grows = false;
+    private long next = 0;
+
+    /**
+     * Visitor of recorded events
+     */
+    @FunctionalInterface
+    public interface EventVisitor {
+
+        /**
+         * Visits a single event
+         * @param sequence number of the event, which increases by one for every recorded event
+         * @param nodeId id of the parsed node in the symbol table of the storage that was parsed with
+         * @param position position in the input at which the node was parsed
+         * @param end position up to which the node was parsed, {@link #FAILED} or {@link #PENDING}
+         * @param memoHit whether the result was taken from the memo
+         */
+        void visit(long sequence, int nodeId, int position, int end, boolean memoHit);
+    }
+
+    /**
+     * Creates a new trace
+     * @param capacity number of most recent events that are kept
+     */
+    public ParseTrace(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        nodeIds = new int[capacity];
+        positions = new int[capacity];
+        ends = new int[capacity];
+        memoHits = new boolean[capacity];
+    }
+
+    /**
+     * Creates a trace that keeps all events, by growing when it is full
+     * @param initialCapacity number of events that are kept before the trace has to grow
+     * @return the trace
+     */
+    public static ParseTrace growing(int initialCapacity) {
+        ParseTrace res = new ParseTrace(initialCapacity);
+        res.grows = true;
+        return res;
+    }
+
+    /**
+     * Records that parsing a node started. The outcome is filled in by {@link #exit(long, int)}.
+     * @param nodeId id of the node that is parsed
+     * @param position position in the input at which it is parsed
+     * @return sequence number of the event
+     */
+    public long enter(int nodeId, int position) {
+        return record(nodeId, position, PENDING, false);
+    }
+
+    /**
+     * Records the outcome of a parse that was started with {@link #enter(int, int)}. Nothing happens if the event was
+     * overwritten in the meantime.
+     * @param sequence sequence number returned when the parse started
+     * @param end position up to which the node was parsed, or {@link #FAILED}
+     */
+    public void exit(long sequence, int end) {
+        if (next - sequence <= ends.length) {
+            ends[(int) (sequence % ends.length)] = end;
+        }
+    }
+
+    /**
+     * Records that the result of parsing a node was taken from the memo
+     * @param nodeId id of the node that is parsed
+     * @param position position in the input at which it is parsed
+     * @param end position up to which the node was parsed, or {@link #FAILED}
+     */
+    public void memoHit(int nodeId, int position, int end) {
+        record(nodeId, position, end, true);
+    }
+
+    private long record(int nodeId, int position, int end, boolean memoHit) {
+        if (grows && next == nodeIds.length) {
+            int capacity = Math.max(nodeIds.length + 1, (int) Math.min(Integer.MAX_VALUE - 8, 2L * nodeIds.length));
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            memoHits = Arrays.copyOf(memoHits, capacity);
+        }
+        int slot = (int) (next % nodeIds.length);
+        nodeIds[slot] = nodeId;
+        positions[slot] = position;
+        ends[slot] = end;
+        memoHits[slot] = memoHit;
+        return next++;
+    }
+
+    /**
+     * Returns the sequence number the next event will get, which is also the number of events recorded so far
+     * @return the next sequence number
+     */
+    public long getSequence() {
+        return next;
+    }
+
+    /**
+     * Visits the events that are still in the buffer, from oldest to newest
+     * @param fromSequence sequence number of the first event to visit, if it is still in the buffer
+     * @param visitor visitor of the events
+     */
+    public void forEach(long fromSequence, EventVisitor visitor) {
+        for (long sequence = Math.max(fromSequence, Math.max(0, next - nodeIds.length)); sequence < next; sequence++) {
+            int slot = (int) (sequence % nodeIds.length);
+            visitor.visit(sequence, nodeIds[slot], positions[slot], ends[slot], memoHits[slot]);
+        }
+    }
+
+    /**
+     * Removes all events
+     */
+    public void clear() {
+        next = 0;
+    }
+
+    /**
+     * Returns the number of events since a sequence number that were overwritten, because the buffer was full
+     * @param fromSequence sequence number of the first event of interest
+     * @return the number of overwritten events
+     */
+    public long getDropped(long fromSequence) {
+        return Math.max(0, next - nodeIds.length - fromSequence);
+    }
+
+    /**
+     * Prints every parse that did not come from the memo, as the node followed by the start of the input that remained,
+     * in the order in which the parses started. At most {@link #PREVIEW_LENGTH} characters of the input are printed per
+     * parse, so rendering takes time linear in the number of events. If events were overwritten, the number of them is
+     * printed first.
+     * @param input input that was parsed
+     * @param symbols symbol table of the storage that was parsed with, which holds the recorded nodes
+     * @param fromSequence sequence number of the first event to print, if it is still in the buffer
+     * @param out stream to print to
+     */
+    public void render(CharSequence input, SymbolTable symbols, long fromSequence, PrintStream out) {
+        long dropped = getDropped(fromSequence);
+        if (dropped > 0) {
+            out.println("(" + dropped + " earlier events were dropped, as the trace was full)");
+        }
+        StringBuilder line = new StringBuilder();
+        forEach(fromSequence, (sequence, nodeId, position, end, memoHit) -> {
+            if (!memoHit) {
+                String name = symbols.get(nodeId).toString();
+                line.setLength(0);
+                line.append(name).append(" ".repeat(Math.max(0, 100 - name.length())));
+                int previewEnd = line.length() + PREVIEW_LENGTH;
+                for (int i = position; i < input.length() && line.length() < previewEnd; i++) {
+                    char c = input.charAt(i);
+                    if (c != '\n' && c != '\r') {
+                        line.append(c);
+                    }
+                }
+                out.println(line);
+            }
+        });
+    }
+}
@@ -1,7 +1,9 @@
 package parselang.parser.parsers;
 
+import parselang.parser.ParseMetrics;
 import parselang.parser.ParseResult;
 import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.FlatAST;
 import parselang.parser.data.Node;
 import parselang.parser.data.NonTerminal;
 import parselang.parser.exceptions.ParseErrorException;
@@ -12,39 +14,98 @@ import parselang.parser.exceptions.ParseErrorException;
 public abstract class Parser {
 
     protected int verbosity = 1;
+    protected ParseTrace trace = null;
+    protected ParseMetrics metrics = null;
+    protected boolean flatTrees = false;
 
     /**
      * Parses a String as far as possible.
-     * @param originalString String to parse
+     * @param originalString text to parse, which can be any character sequence and is never copied
      * @param toParseTo node that is next to be parsed
      * @param storage storage of parse rules that should be used
      * @return an object that contains an AST and information on how successful the parse was
      * @throws ParseErrorException thrown when the string could not (with packrat techniques) be parsed into the nonterminal.
      */
-    abstract ParseResult parse(String originalString, Node toParseTo, ParseRuleStorage storage) throws ParseErrorException;
+    abstract ParseResult parse(CharSequence originalString, Node toParseTo, ParseRuleStorage storage) throws ParseErrorException;
 
     /**
      * Parses a String completely or throws an exception for the user indicating what went wrong.
-     * @param originalString String to parse
+     * @param originalString text to parse, which can be any character sequence and is never copied
      * @param storage storage of parse rules that should be used
      * @param toplevel nonterminal that represents the entire string to parse
      * @return an object that contains an AST and information on how successful the parse was
      * @throws ParseErrorException thrown when the string could not (with packrat techniques) be parsed into the toplevel nonterminal.
      */
-    public ParseResult readFile(String originalString, ParseRuleStorage storage, NonTerminal toplevel) throws ParseErrorException {
+    public ParseResult readFile(CharSequence originalString, ParseRuleStorage storage, NonTerminal toplevel) throws ParseErrorException {
         ParseResult parsed = parse(originalString, toplevel, storage);
-        int remainingLength = parsed.getRemaining().length();
-        if (remainingLength > 0) {
-            throw new ParseErrorException(originalString, originalString.length() - remainingLength);
+        if (parsed.getRemainingLength() > 0) {
+            throw new ParseErrorException(originalString, parsed.getRemainingIndex());
         }
         return parsed;
     }
 
     /**
-     * Sets the verbosity level of this parser. 0 is off, 1 is everything.
+     * Checks whether a String parses completely, without building its AST. The grammar is extended by the declarations
+     * in the String as it would be by {@link #readFile(CharSequence, ParseRuleStorage, NonTerminal)}, so the storage ends up
+     * in the same state.
+     * @param originalString text to check, which can be any character sequence and is never copied
+     * @param storage storage of parse rules that should be used
+     * @param toplevel nonterminal that represents the entire string to parse
+     * @throws ParseErrorException thrown when the string could not (with packrat techniques) be parsed into the toplevel nonterminal, at the farthest position that could be parsed.
+     */
+    public abstract void recognize(CharSequence originalString, ParseRuleStorage storage, NonTerminal toplevel) throws ParseErrorException;
+
+    /**
+     * Parses a String completely, like {@link #readFile(CharSequence, ParseRuleStorage, NonTerminal)}, and encodes the
+     * resulting tree compactly. The tree then takes several times less memory, which matters for large programs. If
+     * the parser records its results in flat trees, the tree is returned without ever creating ASTs.
+     * @param originalString text to parse, which can be any character sequence and is never copied
+     * @param storage storage of parse rules that should be used
+     * @param toplevel nonterminal that represents the entire string to parse
+     * @return the encoded AST
+     * @throws ParseErrorException thrown when the string could not (with packrat techniques) be parsed into the toplevel nonterminal.
+     */
+    public FlatAST readFileFlat(CharSequence originalString, ParseRuleStorage storage, NonTerminal toplevel) throws ParseErrorException {
+        ParseResult parsed = readFile(originalString, storage, toplevel);
+        return parsed.getFlatTree() != null ? parsed.getFlatTree() : FlatAST.encode(parsed.getTree(), storage.getSymbols());
+    }
+
+    /**
+     * Sets the verbosity level of this parser. 0 is off, 1 prints every parse step once parsing is done, which is the
+     * default. If a trace is set with {@link #setTrace(ParseTrace)}, the steps are printed from it, and the steps it
+     * could not keep are only counted.
      * @param level verbosity level
      */
     public void setVerbosity(int level) {
         this.verbosity = level;
     }
+
+    /**
+     * Sets whether parse results are recorded in a flat tree instead of as ASTs. The result of a parse then holds a
+     * {@link FlatAST} with only the nodes of the final tree, and its AST is created when it is first navigated into.
+     * This saves most of the allocations of a parse, since the interpreter never looks into most of the tree.
+     * @param flatTrees true to record results in flat trees
+     */
+    public void setFlatTrees(boolean flatTrees) {
+        this.flatTrees = flatTrees;
+    }
+
+    /**
+     * Sets the trace that parse events are recorded in. Since a trace is not thread-safe, a parser with a trace should
+     * only be used on one thread at a time. Nodes are recorded by their id in the symbol table of the storage of each
+     * parse, which is what the events of a parse are rendered with.
+     * @param trace trace to record in, or null to stop recording
+     */
+    public void setTrace(ParseTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Sets the statistics that parses are counted in. The storages used by the parses record the time they spend on
+     * grammar mutations in the same statistics.
+     * @param metrics statistics to record in, or null to stop recording
+     */
+    public void setMetrics(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
 }
@@ -1,16 +1,17 @@
 package parselang.parser.parsers;
 
 
+import parselang.parser.MappedSource;
+import parselang.parser.ParseMetrics;
 import parselang.parser.ParseResult;
 import parselang.parser.ParseRuleStorage;
-import parselang.parser.TreeFixer;
 import parselang.parser.data.*;
 import parselang.parser.exceptions.ParseErrorException;
+import parselang.parser.rulealgorithms.LookaheadTable;
 import parselang.util.DeclarationTree;
 
-import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.Deque;
+import java.lang.management.ManagementFactory;
+import java.util.List;
 
 import static parselang.parser.ParseRuleStorage.*;
 
@@ -19,70 +20,258 @@ import static parselang.parser.ParseRuleStorage.*;
  */
 public class RecursiveParser extends Parser{
 
-    private int farthestParse;
-    private final TreeFixer treeFixer = new TreeFixer();
-    private final MaxSizeDoubleMap<Integer, Node, ParseResult> memo = new MaxSizeDoubleMap<>(1000);
+    private static final NonTerminal VARIABLE = nonTerm("Variable");
+    private static final NonTerminal NON_TERMINAL = nonTerm("NonTerminal");
+    private static final NonTerminal DECLARATION = nonTerm("Declaration");
+    private static final NonTerminal DECLARATION_CONTENT = nonTerm("DeclarationContent");
+    private static final int VERBOSE_TRACE_CAPACITY = 1 << 16;
+    private static final int RECOGNITION_MEMO_CAPACITY = 1 << 6;
+    private static final ParseRule DECLARATION_RULE = new ParseRule("Declaration").addRhs(nonTerm("NonTerminal"), ws(), nonTerm("GTorLT"), ws(), nonTerm("NonTerminal"), ws(), term("="), star(ws(), nonTerm("Token")), ws(), term("{"), ws(), nonTerm("DeclarationContent"), ws(), term("}"));
+
+    private final int memoCapacity;
+
+    /**
+     * Creates a new recursive parser with a memo sized for small programs
+     */
+    public RecursiveParser() {
+        this(1 << 12);
+    }
+
+    /**
+     * Creates a new recursive parser. A parser keeps no state between parses, so it can parse on multiple threads at once
+     * as long as every parse uses a parse rule storage of its own.
+     * @param memoCapacity number of memoized results a parse can hold before its memo table has to grow
+     */
+    public RecursiveParser(int memoCapacity) {
+        this.memoCapacity = memoCapacity;
+    }
 
     /**
      * @inheritDoc
      */
     @Override
-    public synchronized ParseResult parse(String originalString, Node toParseTo, ParseRuleStorage storage) throws ParseErrorException {
-        farthestParse = 0;
+    public ParseResult parse(CharSequence originalString, Node toParseTo, ParseRuleStorage storage) throws ParseErrorException {
+        FlatAST flatTree = flatTrees ? new FlatAST(originalString, storage.getSymbols()) : null;
+        MemoTable memo = new MemoTable(storage.getSymbols(), memoCapacity);
+        ResultSink trees = flatTree != null ? new FlatTreeSink(flatTree, memo) : new TreeSink(originalString, memo);
+        ParseContext context = startParse(originalString, storage, trees, null);
+        int end;
         try {
-            ParseResult res = parse(originalString, 0, toParseTo, storage);
-            res.setTree((AST) treeFixer.fix(res.getTree()));
-            if (res.getRemainingIndex() < originalString.length()) {
-                throw new ParseErrorException(originalString, farthestParse);
-            }
-            return res;
-        } catch (ParseErrorException e) {
-            e.printStackTrace();
-            throw new ParseErrorException(originalString, farthestParse);
+            end = parse(context, 0, toParseTo);
+        } finally {
+            finishParse(context);
+        }
+        if (end == MemoTable.FAILED || end < originalString.length()) {
+            throw new ParseErrorException(originalString, context.farthestParse);
         }
+        ParseResult res = trees.result(end);
+        if (flatTree != null) {
+            FlatAST compacted = flatTree.compact(res.getNode());
+            return new ParseResult(originalString, compacted, compacted.root(), end);
+        }
+        return res;
     }
 
-    private ParseResult parse(String originalString, int notYetParsed, Node toParseTo, ParseRuleStorage storage) throws ParseErrorException  {
-        if (memo.contains(notYetParsed, toParseTo)) {
-            return memo.get(notYetParsed, toParseTo);
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void recognize(CharSequence originalString, ParseRuleStorage storage, NonTerminal toplevel) throws ParseErrorException {
+        ResultSink trees = new TreeSink(originalString, new MemoTable(storage.getSymbols(), RECOGNITION_MEMO_CAPACITY));
+        ParseContext context = startParse(originalString, storage, trees, new EndSink(new MemoTable(storage.getSymbols(), memoCapacity, true)));
+        int end;
+        try {
+            end = parse(context, 0, toplevel);
+        } finally {
+            finishParse(context);
         }
-        if (originalString.length() < notYetParsed) {
-            throw new ParseErrorException();
+        if (end != originalString.length()) {
+            throw new ParseErrorException(originalString, context.farthestParse);
+        }
+    }
+
+    private ParseContext startParse(CharSequence originalString, ParseRuleStorage storage, ResultSink trees, ResultSink ends) {
+        ParseTrace parseTrace = trace == null && verbosity >= 1 ? ParseTrace.growing(VERBOSE_TRACE_CAPACITY) : trace;
+        ParseMetrics.Recorder recorder = metrics == null ? null : metrics.startParse(storage.getSymbols());
+        ParseMetrics storageMetrics = storage.getMetrics();
+        if (metrics != null) {
+            storage.setMetrics(metrics);
+        }
+        ParseContext context = new ParseContext(originalString, storage, trees, ends, parseTrace, recorder);
+        context.storageMetrics = storageMetrics;
+        context.firstTraceEvent = parseTrace == null ? 0 : parseTrace.getSequence();
+        context.variable = context.symbols.intern(VARIABLE);
+        context.nonTerminal = context.symbols.intern(NON_TERMINAL);
+        context.declaration = context.symbols.intern(DECLARATION);
+        context.declarationContent = context.symbols.intern(DECLARATION_CONTENT);
+        storage.addMutator(VARIABLE);
+        storage.addMutator(DECLARATION);
+        context.allocatedBefore = allocatedBytes();
+        return context;
+    }
+
+    private void finishParse(ParseContext context) {
+        context.storage.clearHistory();
+        context.storage.setMetrics(context.storageMetrics);
+        if (context.metrics != null) {
+            MemoTable memo = context.trees.getMemo();
+            context.metrics.memoLookups(memo.getHits(), memo.getMisses(), memo.getInvalidations());
+            context.metrics.memoEvictions(memo.getEvictions());
+            if (context.ends != null) {
+                MemoTable ends = context.ends.getMemo();
+                context.metrics.memoLookups(ends.getHits(), ends.getMisses(), ends.getInvalidations());
+                context.metrics.memoEvictions(ends.getEvictions());
+            }
+            context.metrics.allocated(allocatedBytes() - context.allocatedBefore);
+            context.metrics.finish();
         }
         if (verbosity >= 1) {
-            System.out.println(toParseTo + " ".repeat(100 - toParseTo.toString().length()) + originalString.substring(notYetParsed).replace("\n", "").replace("\r", ""));
+            context.trace.render(context.input, context.symbols, context.firstTraceEvent, System.out);
         }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, if the JVM measures this and metrics are
+     * recorded
+     */
+    private long allocatedBytes() {
+        if (metrics != null && ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a node at a position, adding the result to the sink of the context. A parse that only recognizes its input
+     * runs the same algorithm with a sink that builds no trees.
+     * @return index of the first character after the parsed part, or {@link MemoTable#FAILED}
+     */
+    private int parse(ParseContext context, int notYetParsed, Node toParseTo) {
+        int memoized = context.sink.memoized(notYetParsed, toParseTo, context.storage);
+        if (memoized != MemoTable.NOT_MEMOIZED) {
+            if (context.trace != null) {
+                context.trace.memoHit(context.symbols.intern(toParseTo), notYetParsed, memoized == MemoTable.FAILED ? ParseTrace.FAILED : memoized);
+            }
+            return memoized;
+        }
+        if (context.input.length() < notYetParsed) {
+            return MemoTable.FAILED;
+        }
+        if (context.trace == null) {
+            return parseNode(context, notYetParsed, toParseTo);
+        }
+        long event = context.trace.enter(context.symbols.intern(toParseTo), notYetParsed);
+        int end = parseNode(context, notYetParsed, toParseTo);
+        context.trace.exit(event, end == MemoTable.FAILED ? ParseTrace.FAILED : end);
+        return end;
+    }
+
+    private int parseNode(ParseContext context, int notYetParsed, Node toParseTo) {
         if (toParseTo instanceof NonTerminal) {
-            NonTerminal toParseToNT = (NonTerminal) toParseTo;
-            storage.registerNonTerminal(toParseToNT);
-            Collection<ParseRule> rulesToTry = storage.getByNonTerminal(toParseToNT, notYetParsed == originalString.length() ? null : originalString.charAt(notYetParsed));
-             for (ParseRule ruleToTry : rulesToTry) {
-                try {
-                    ParseResult res =  parseWithRule(originalString, notYetParsed, ruleToTry, storage);
-                    if (toParseTo.equals(nonTerm("Variable"))) {
-                        addParameter(originalString, res.getTree(), storage);
-                    } else if (toParseTo.equals(nonTerm("NonTerminal"))) {
-                        addNonTerminalName(res.getTree(), storage);
-                    } else if (toParseToNT.getName().equals("Declaration")) {
-                        storage.removeParameters();
-                    }
-                    memo.put(notYetParsed, toParseTo, res);
-                    return res;
-                } catch (ParseErrorException ignored) {
-                }
+            int id = context.symbols.intern(toParseTo);
+            if ((id == context.variable || id == context.nonTerminal) && context.sink != context.trees) {
+                return parseIntoTree(context, notYetParsed, (NonTerminal) toParseTo);
+            }
+            if (id != context.declaration) {
+                return parseNonTerminal(context, notYetParsed, (NonTerminal) toParseTo);
+            }
+            context.storage.beginBatch();
+            try {
+                return parseNonTerminal(context, notYetParsed, (NonTerminal) toParseTo);
+            } finally {
+                context.storage.commitBatch();
             }
-            throw new ParseErrorException();
         } else if (toParseTo instanceof Terminal) {
-            return parseTerminal(originalString, notYetParsed, (Terminal) toParseTo);
+            return parseTerminal(context, notYetParsed, (Terminal) toParseTo);
+        } else if (toParseTo instanceof StarNode) {
+            return parseStar(context, notYetParsed, (StarNode) toParseTo);
+        } else if (toParseTo instanceof BoundNode) {
+            return parse(context, notYetParsed, ((BoundNode) toParseTo).getContent());
         } else {
-            throw new UnsupportedOperationException("Not yet implemented");
+            throw new IllegalStateException("A " + toParseTo.getClass().getSimpleName() + " can only be parsed as part of a rule");
         }
     }
 
-    private void addParameter(String originalString, AST tree, ParseRuleStorage storage) {
+    /**
+     * Parses a nonterminal whose tree changes the grammar, such as a variable, while the input is only recognized. Only
+     * the end of the tree is memoized in the sink of the recognition.
+     */
+    private int parseIntoTree(ParseContext context, int notYetParsed, NonTerminal toParseTo) {
+        ResultSink ends = context.sink;
+        int mark = context.trees.pending();
+        context.sink = context.trees;
+        int end = parseNonTerminal(context, notYetParsed, toParseTo);
+        context.trees.dropPending(mark);
+        context.sink = ends;
+        ends.memoize(notYetParsed, toParseTo, end, context.storage.getVersion());
+        return end;
+    }
+
+    private int parseNonTerminal(ParseContext context, int notYetParsed, NonTerminal toParseTo) {
+        if (context.metrics == null) {
+            return parseWithRules(context, notYetParsed, toParseTo);
+        }
+        long start = System.nanoTime();
+        int end = parseWithRules(context, notYetParsed, toParseTo);
+        context.metrics.nonTerminalParsed(toParseTo, System.nanoTime() - start);
+        return end;
+    }
+
+    /**
+     * Parses a nonterminal with the first of its rules that applies
+     */
+    private int parseWithRules(ParseContext context, int notYetParsed, NonTerminal toParseTo) {
+        context.storage.registerNonTerminal(toParseTo);
+        List<ParseRule> rulesToTry = context.storage.getByNonTerminal(toParseTo, notYetParsed == context.input.length() ? LookaheadTable.END : context.input.charAt(notYetParsed));
+        for (int i = 0; i < rulesToTry.size(); i++) {
+            ParseRule ruleToTry = rulesToTry.get(i);
+            boolean undoable = context.storage.mayMutate(ruleToTry);
+            int snapshot = undoable ? context.storage.snapshot() : 0;
+            if (context.metrics != null) {
+                context.metrics.ruleAttempt(toParseTo);
+            }
+            boolean outerCut = context.cut;
+            context.cut = false;
+            int end = parseWithRule(context, notYetParsed, ruleToTry);
+            boolean committed = context.cut;
+            context.cut = outerCut;
+            if (end == MemoTable.FAILED) {
+                if (context.metrics != null) {
+                    context.metrics.ruleFailure(toParseTo, context.farthestParse - notYetParsed, !committed && i < rulesToTry.size() - 1);
+                }
+                if (undoable) {
+                    context.storage.rollback(snapshot);
+                }
+                if (committed) {
+                    break;
+                }
+                continue;
+            }
+            if (undoable) {
+                context.storage.release(snapshot);
+            }
+            int id = context.symbols.intern(toParseTo);
+            if (id == context.variable) {
+                addParameter(context, context.sink.result(end).getTree());
+            } else if (id == context.nonTerminal) {
+                addNonTerminalName(context.sink.result(end).getTree(), context.storage);
+            } else if (id == context.declaration) {
+                context.storage.removeParameters();
+            }
+            context.sink.memoize(notYetParsed, toParseTo, end, context.storage.getVersion());
+            return end;
+        }
+        context.sink.memoize(notYetParsed, toParseTo, MemoTable.FAILED, context.storage.getVersion());
+        return MemoTable.FAILED;
+    }
+
+    private void addParameter(ParseContext context, AST tree) {
         boolean lazy = ((AST)tree.getLastChild()).getChildren().size() == 1;
-        String ruleToAdd = lazy ? originalString.substring(tree.getParsedFrom(), tree.getParsedTo() - 1) : tree.parseString();
-        storage.addParameter(ruleToAdd);
+        String ruleToAdd = lazy ? context.input.subSequence(tree.getParsedFrom(), tree.getParsedTo() - 1).toString() : tree.parseString();
+        context.storage.addParameter(ruleToAdd);
     }
 
     private void addNonTerminalName(AST tree, ParseRuleStorage storage) {
@@ -96,24 +285,22 @@ public class RecursiveParser extends Parser{
         storage.addCustomRules(inheritanceRule, declTree.getDirection(), ruleToAdd2);
     }
 
-    private ParseResult parseTerminal(String originalString, int notYetParsed, Terminal toParseTo) throws ParseErrorException {
-        if (memo.contains(notYetParsed, toParseTo)) {
-            return memo.get(notYetParsed, toParseTo);
-        }
-        int size = toParseTo.getValue().length();
-        if (originalString.length() <= notYetParsed || (originalString.charAt(notYetParsed) == toParseTo.getValue().charAt(0) && subStringStartsWith(originalString, notYetParsed, toParseTo.getValue()))) {
-            AST tree = new AST(toParseTo, originalString);
-            tree.setParsed(notYetParsed, notYetParsed + size);
-            farthestParse = Math.max(farthestParse, notYetParsed + size);
-            ParseResult res = new ParseResult(originalString, tree);
-            memo.put(notYetParsed, toParseTo, res);
-            return res;
-        } else {
-            throw new ParseErrorException();
+    private int parseTerminal(ParseContext context, int notYetParsed, Terminal toParseTo) {
+        if (!matches(context, notYetParsed, toParseTo)) {
+            return MemoTable.FAILED;
         }
+        int end = notYetParsed + toParseTo.getValue().length();
+        context.farthestParse = Math.max(context.farthestParse, end);
+        context.sink.addTerminal(toParseTo, notYetParsed, end);
+        context.sink.memoize(notYetParsed, toParseTo, end, 0);
+        return end;
+    }
+
+    private boolean matches(ParseContext context, int notYetParsed, Terminal terminal) {
+        return context.input.length() <= notYetParsed || (context.input.charAt(notYetParsed) == terminal.getValue().charAt(0) && subStringStartsWith(context.input, notYetParsed, terminal.getValue()));
     }
 
-    private boolean subStringStartsWith(String originalString, int notYetParsed, String value) {
+    private boolean subStringStartsWith(CharSequence originalString, int notYetParsed, String value) {
         for (int i = 0; i < value.length(); i++) {
             if (originalString.charAt(i + notYetParsed) != value.charAt(i)) {
                 return false;
@@ -122,27 +309,142 @@ public class RecursiveParser extends Parser{
         return true;
     }
 
-    private ParseResult parseWithRule(String originalString, int notYetParsed, ParseRule ruleToTry, ParseRuleStorage storage) throws ParseErrorException {
+    /**
+     * Parses a kleene star by repeatedly parsing its contents for as long as the FIRST+ set allows another repetition
+     * and the contents can be parsed. Repetitions of a single node are added to the resulting list directly, while
+     * repetitions of multiple nodes are added as lists.
+     */
+    private int parseStar(ParseContext context, int notYetParsed, StarNode star) {
+        NonTerminal generated = context.storage.getGeneratedNonTerminal(star);
+        context.storage.registerNonTerminal(generated);
+        List<Node> contents = star.contents();
+        ResultSink results = context.sink;
+        int mark = results.pending();
         int newlyParsed = notYetParsed;
-        AST ast = new AST(ruleToTry.getLHS(), originalString);
-        Deque<Node> toTry = new ArrayDeque<>(ruleToTry.getRHS());
-        while (!toTry.isEmpty()) {
-            Node node = toTry.pop();
-            if (node instanceof NonTerminal && ((NonTerminal) node).getName().equals("DeclarationContent") && ruleToTry.getOrigin().equals(new ParseRule("Declaration").addRhs(nonTerm("NonTerminal"), ws(), nonTerm("GTorLT"), ws(), nonTerm("NonTerminal"), ws(), term("="), star(ws(), nonTerm("Token")), ws(), term("{"), ws(), nonTerm("DeclarationContent"), ws(), term("}")))) {
-                updateGrammar(ast, storage);
-            }
-            if (node instanceof NonTerminal || node instanceof Terminal) {
-                ParseResult subResult = parse(originalString, newlyParsed, node, storage);
-                newlyParsed = subResult.getRemainingIndex();
-                ast.addChild(subResult.getTree());
-            } else if (node instanceof BoundNode) {
-                toTry.push(((BoundNode) node).getContent());
-            }
-        }
-        ast.setParsed(notYetParsed, newlyParsed);
-        ast.setRuleApplied(ruleToTry);
-        ParseResult res = new ParseResult(originalString, ast);
-        memo.put(notYetParsed, ruleToTry.getLHS(), res);
-        return res;
+        while (true) {
+            if (newlyParsed != notYetParsed) {
+                int memoized = results.memoizedRepetitions(newlyParsed, star, context.storage);
+                if (memoized == MemoTable.FAILED) {
+                    results.dropPending(mark);
+                    results.memoize(notYetParsed, star, MemoTable.FAILED, context.storage.getVersion());
+                    return MemoTable.FAILED;
+                } else if (memoized != MemoTable.NOT_MEMOIZED) {
+                    newlyParsed = memoized;
+                    break;
+                }
+            }
+            if (!canRepeat(context.storage.getByNonTerminal(generated, newlyParsed == context.input.length() ? LookaheadTable.END : context.input.charAt(newlyParsed)))) {
+                break;
+            }
+            boolean undoable = context.storage.mayMutate(star);
+            int snapshot = undoable ? context.storage.snapshot() : 0;
+            int repetitionMark = results.pending();
+            int repetitionEnd = newlyParsed;
+            boolean outerCut = context.cut;
+            context.cut = false;
+            for (Node node : contents) {
+                while (node instanceof BoundNode) {
+                    node = ((BoundNode) node).getContent();
+                }
+                if (node instanceof CutNode) {
+                    cut(context, repetitionEnd);
+                    continue;
+                }
+                repetitionEnd = parse(context, repetitionEnd, node);
+                if (repetitionEnd == MemoTable.FAILED) {
+                    break;
+                }
+            }
+            boolean committed = context.cut;
+            context.cut = outerCut;
+            if (repetitionEnd == MemoTable.FAILED && committed) {
+                results.dropPending(mark);
+                if (undoable) {
+                    context.storage.rollback(snapshot);
+                }
+                results.memoize(notYetParsed, star, MemoTable.FAILED, context.storage.getVersion());
+                return MemoTable.FAILED;
+            }
+            if (undoable) {
+                if (repetitionEnd == MemoTable.FAILED) {
+                    context.storage.rollback(snapshot);
+                } else {
+                    context.storage.release(snapshot);
+                }
+            }
+            if (repetitionEnd == MemoTable.FAILED || repetitionEnd == newlyParsed) {
+                results.dropPending(repetitionMark);
+                break;
+            }
+            results.addRepetition(repetitionMark);
+            newlyParsed = repetitionEnd;
+        }
+        results.addStar(mark, newlyParsed);
+        results.memoize(notYetParsed, star, newlyParsed, context.storage.getVersion());
+        return newlyParsed;
+    }
+
+    /**
+     * Commits the parse to the alternative that is being parsed, and evicts the results memoized before the cut along
+     * with the characters a mapped source decoded before it. Should an enclosing nonterminal backtrack before the cut
+     * after all, those are parsed and decoded again.
+     */
+    private void cut(ParseContext context, int position) {
+        context.cut = true;
+        context.trees.getMemo().evictBefore(position);
+        if (context.ends != null) {
+            context.ends.getMemo().evictBefore(position);
+        }
+        if (context.input instanceof MappedSource) {
+            ((MappedSource) context.input).discardBefore(position);
+        }
+    }
+
+    private boolean canRepeat(List<ParseRule> generatedRules) {
+        for (ParseRule rule : generatedRules) {
+            if (!rule.getRHS().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a rule. The part of a declaration before its content is parsed into a tree even while the input is only
+     * recognized, since the grammar is extended with it before the content is parsed.
+     */
+    private int parseWithRule(ParseContext context, int notYetParsed, ParseRule ruleToTry) {
+        ResultSink results = context.sink;
+        boolean declaration = context.symbols.intern(ruleToTry.getLHS()) == context.declaration && ruleToTry.getOrigin().equals(DECLARATION_RULE);
+        if (declaration) {
+            context.sink = context.trees;
+        }
+        int mark = context.sink.pending();
+        int newlyParsed = notYetParsed;
+        for (Node node : ruleToTry.getRHS()) {
+            while (node instanceof BoundNode) {
+                node = ((BoundNode) node).getContent();
+            }
+            if (declaration && context.symbols.intern(node) == context.declarationContent) {
+                updateGrammar(context.sink.partialTree(ruleToTry.getLHS(), mark), context.storage);
+                if (context.sink != results) {
+                    context.sink.dropPending(mark);
+                    context.sink = results;
+                    mark = results.pending();
+                }
+            }
+            if (node instanceof NonTerminal || node instanceof Terminal || node instanceof StarNode) {
+                newlyParsed = parse(context, newlyParsed, node);
+                if (newlyParsed == MemoTable.FAILED) {
+                    context.sink.dropPending(mark);
+                    context.sink = results;
+                    return MemoTable.FAILED;
+                }
+            } else if (node instanceof CutNode) {
+                cut(context, newlyParsed);
+            }
+        }
+        results.addRule(ruleToTry, notYetParsed, newlyParsed, mark);
+        return newlyParsed;
     }
 }
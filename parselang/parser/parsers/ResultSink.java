@@ -0,0 +1,111 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseResult;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.*;
+
+/**
+ * Receives the results of a parse as the parser finds them, and memoizes them. The parser runs the same algorithm
+ * whether it builds trees or only recognizes its input; a sink decides what is kept of a result.
+ * <p>
+ * Results are kept on a stack of pending results. Every successful parse of a node leaves one result on the stack,
+ * which becomes part of the result of the rule or kleene star that is parsed around it. A failed parse leaves nothing.
+ */
+interface ResultSink {
+
+    /**
+     * Looks up the result memoized for a node at a position, and makes it pending if there is one
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param storage grammar that decides whether the result is still valid
+     * @return index of the first character after the parsed part, {@link MemoTable#FAILED} if the parse failed, or
+     * {@link MemoTable#NOT_MEMOIZED} if there is no valid result
+     */
+    int memoized(int position, Node node, ParseRuleStorage storage);
+
+    /**
+     * Looks up the result memoized for a kleene star at a position, and makes its repetitions pending if there is one,
+     * so they become repetitions of a star that was parsed before that position
+     * @param position index in the parsed string
+     * @param star star that was parsed at that index
+     * @param storage grammar that decides whether the result is still valid
+     * @return index of the first character after the parsed part, {@link MemoTable#FAILED} if the parse failed, or
+     * {@link MemoTable#NOT_MEMOIZED} if there is no valid result
+     */
+    int memoizedRepetitions(int position, StarNode star, ParseRuleStorage storage);
+
+    /**
+     * Memoizes the result of parsing a node at a position, which is the last pending result if the parse succeeded
+     * @param position index in the parsed string
+     * @param node node that was parsed at that index
+     * @param end index of the first character after the parsed part, or {@link MemoTable#FAILED}
+     * @param version grammar version the result was computed under
+     */
+    void memoize(int position, Node node, int end, long version);
+
+    /**
+     * Returns the number of pending results, to be used as the mark from which the children of a result are taken
+     * @return the number of pending results
+     */
+    int pending();
+
+    /**
+     * Removes pending results, such as the children of a rule that failed to parse
+     * @param mark number of pending results to keep
+     */
+    void dropPending(int mark);
+
+    /**
+     * Adds the result of parsing a terminal
+     * @param terminal the terminal
+     * @param from start index (inclusive) of the terminal in the parsed string
+     * @param to end index (exclusive) of the terminal in the parsed string
+     */
+    void addTerminal(Terminal terminal, int from, int to);
+
+    /**
+     * Adds the result of parsing a rule, whose children are the results that became pending after a mark
+     * @param rule the rule
+     * @param from start index (inclusive) of the rule in the parsed string
+     * @param to end index (exclusive) of the rule in the parsed string
+     * @param mark number of pending results before the first child was added
+     */
+    void addRule(ParseRule rule, int from, int to, int mark);
+
+    /**
+     * Adds a repetition of a kleene star, made of the results that became pending after a mark. A repetition of a
+     * single node is that node itself, while a repetition of multiple nodes is a list.
+     * @param mark number of pending results before the first result of the repetition was added
+     */
+    void addRepetition(int mark);
+
+    /**
+     * Adds the result of parsing a kleene star, whose repetitions are the results that became pending after a mark
+     * @param mark number of pending results before the first repetition was added
+     * @param end index of the first character after the last repetition
+     */
+    void addStar(int mark, int end);
+
+    /**
+     * Returns a tree of the results of a rule that is not yet parsed completely, while keeping them pending
+     * @param lhs left hand side of the rule
+     * @param mark number of pending results before the first child of the rule was added
+     * @return the tree
+     * @throws UnsupportedOperationException if this sink builds no trees
+     */
+    AST partialTree(NonTerminal lhs, int mark);
+
+    /**
+     * Returns the last pending result
+     * @param end index of the first character after the parsed part of the result
+     * @return the result
+     * @throws UnsupportedOperationException if this sink builds no trees
+     */
+    ParseResult result(int end);
+
+    /**
+     * Returns the table in which this sink memoizes results
+     * @return the memo table
+     */
+    MemoTable getMemo();
+}
@@ -0,0 +1,171 @@
+package parselang.parser.parsers;
+
+import parselang.parser.ParseResult;
+import parselang.parser.ParseRuleStorage;
+import parselang.parser.data.*;
+
+import java.util.Arrays;
+
+/**
+ * Sink that builds an AST for every result
+ */
+class TreeSink implements ResultSink {
+
+    private final CharSequence input;
+    private final MemoTable memo;
+    private ASTElem[] pending = new ASTElem[16];
+    private int pendingSize = 0;
+
+    /**
+     * Creates a sink without pending results
+     * @param input string that is parsed
+     * @param memo empty table to memoize results in
+     */
+    TreeSink(CharSequence input, MemoTable memo) {
+        this.input = input;
+        this.memo = memo;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoized(int position, Node node, ParseRuleStorage storage) {
+        ParseResult memoized = memo.get(position, node, storage);
+        if (memoized == null) {
+            return MemoTable.NOT_MEMOIZED;
+        } else if (memoized == ParseResult.FAIL) {
+            return MemoTable.FAILED;
+        }
+        addPending(memoized.getElement());
+        return memoized.getRemainingIndex();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int memoizedRepetitions(int position, StarNode star, ParseRuleStorage storage) {
+        ParseResult memoized = memo.get(position, star, storage);
+        if (memoized == null) {
+            return MemoTable.NOT_MEMOIZED;
+        } else if (memoized == ParseResult.FAIL) {
+            return MemoTable.FAILED;
+        }
+        for (ASTElem repetition : (ASTElemList) memoized.getElement()) {
+            addPending(repetition);
+        }
+        return memoized.getRemainingIndex();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void memoize(int position, Node node, int end, long version) {
+        memo.put(position, node, end == MemoTable.FAILED ? ParseResult.FAIL : result(end), version);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int pending() {
+        return pendingSize;
+    }
+
+    private void addPending(ASTElem result) {
+        if (pendingSize == pending.length) {
+            pending = Arrays.copyOf(pending, pendingSize * 2);
+        }
+        pending[pendingSize++] = result;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void dropPending(int mark) {
+        while (pendingSize > mark) {
+            pending[--pendingSize] = null;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addTerminal(Terminal terminal, int from, int to) {
+        AST tree = new AST(terminal, input);
+        tree.setParsed(from, to);
+        addPending(tree);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRule(ParseRule rule, int from, int to, int mark) {
+        AST tree = partialTree(rule.getLHS(), mark);
+        tree.setParsed(from, to);
+        tree.setRuleApplied(rule);
+        dropPending(mark);
+        addPending(tree);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addRepetition(int mark) {
+        if (pendingSize - mark > 1) {
+            addPending(takeList(mark));
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void addStar(int mark, int end) {
+        addPending(takeList(mark));
+    }
+
+    private ASTElemList takeList(int mark) {
+        ASTElemList list = new ASTElemList(pendingSize - mark);
+        for (int i = mark; i < pendingSize; i++) {
+            list.add(pending[i]);
+        }
+        dropPending(mark);
+        return list;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public AST partialTree(NonTerminal lhs, int mark) {
+        AST tree = new AST(lhs, input, pendingSize - mark);
+        for (int i = mark; i < pendingSize; i++) {
+            tree.addChild(pending[i]);
+        }
+        return tree;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ParseResult result(int end) {
+        ASTElem last = pending[pendingSize - 1];
+        return last instanceof AST ? new ParseResult(input, (AST) last) : new ParseResult(input, (ASTElemList) last, end);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public MemoTable getMemo() {
+        return memo;
+    }
+}
@@ -0,0 +1,213 @@
+package parselang.parser.rulealgorithms;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of lookahead characters used in FIRST and FOLLOW sets. Characters are stored as bits in an array of words that
+ * only grows as far as the largest character in the set, so sets of ASCII characters take two words. The empty string
+ * is stored as a separate flag. As in the rest of the analysis, it also stands for the end of the input.
+ */
+public final class CharSet {
+
+    /**
+     * Element code of the empty string (and end of the input), which lies just outside the range of characters.
+     */
+    public static final int EPSILON = Character.MAX_VALUE + 1;
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private long[] words = NO_WORDS;
+    private boolean epsilon;
+
+    /**
+     * Creates an empty set
+     */
+    public CharSet() {
+    }
+
+    /**
+     * Creates a set containing a single element
+     * @param element a character or {@link #EPSILON}
+     * @return the new set
+     */
+    public static CharSet of(int element) {
+        CharSet res = new CharSet();
+        res.add(element);
+        return res;
+    }
+
+    /**
+     * Creates a set with the same elements as this one
+     * @return the copy
+     */
+    public CharSet copy() {
+        CharSet res = new CharSet();
+        res.words = words.length == 0 ? NO_WORDS : words.clone();
+        res.epsilon = epsilon;
+        return res;
+    }
+
+    /**
+     * Adds an element to this set
+     * @param element a character or {@link #EPSILON}
+     * @return whether the set changed
+     */
+    public boolean add(int element) {
+        if (element == EPSILON) {
+            boolean changed = !epsilon;
+            epsilon = true;
+            return changed;
+        }
+        int word = element >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, word + 1);
+        }
+        long old = words[word];
+        words[word] = old | (1L << element);
+        return words[word] != old;
+    }
+
+    /**
+     * Adds all elements of another set to this set
+     * @param other set to add
+     * @return whether the set changed
+     */
+    public boolean addAll(CharSet other) {
+        boolean changed = other.epsilon && !epsilon;
+        epsilon |= other.epsilon;
+        long[] otherWords = other.words;
+        if (otherWords.length > words.length) {
+            words = Arrays.copyOf(words, otherWords.length);
+        }
+        for (int i = 0; i < otherWords.length; i++) {
+            long old = words[i];
+            words[i] = old | otherWords[i];
+            changed |= words[i] != old;
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether this set contains an element
+     * @param element a character or {@link #EPSILON}
+     * @return whether it is an element of this set
+     */
+    public boolean contains(int element) {
+        if (element == EPSILON) {
+            return epsilon;
+        }
+        int word = element >>> 6;
+        return word < words.length && (words[word] & (1L << element)) != 0;
+    }
+
+    /**
+     * Checks whether this set contains the empty string
+     * @return whether {@link #EPSILON} is an element of this set
+     */
+    public boolean containsEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Checks whether this set has no elements
+     * @return whether this set is empty
+     */
+    public boolean isEmpty() {
+        if (epsilon) {
+            return false;
+        }
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of elements in this set
+     * @return the number of elements
+     */
+    public int size() {
+        int res = epsilon ? 1 : 0;
+        for (long word : words) {
+            res += Long.bitCount(word);
+        }
+        return res;
+    }
+
+    /**
+     * Passes every element of this set to an action, characters in ascending order followed by {@link #EPSILON}.
+     * @param action action to perform on each element
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        if (epsilon) {
+            action.accept(EPSILON);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CharSet)) {
+            return false;
+        }
+        CharSet other = (CharSet) o;
+        if (epsilon != other.epsilon) {
+            return false;
+        }
+        int common = Math.min(words.length, other.words.length);
+        for (int i = 0; i < common; i++) {
+            if (words[i] != other.words[i]) {
+                return false;
+            }
+        }
+        long[] longer = words.length > common ? words : other.words;
+        for (int i = common; i < longer.length; i++) {
+            if (longer[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int hashCode() {
+        int end = words.length;
+        while (end > 0 && words[end - 1] == 0) {
+            end--;
+        }
+        return 31 * Arrays.hashCode(Arrays.copyOf(words, end)) + (epsilon ? 1 : 0);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        forEach(element -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(element == EPSILON ? "null" : String.valueOf((char) element));
+        });
+        return sb.append("]").toString();
+    }
+}
@@ -21,5 +21,5 @@ public abstract class FirstCalculator {
      * @param terminals List of all terminals
      * @param nonTerminals List of all nonterminals
      */
-    public abstract Map<Node, Set<Character>> computeFirst(Map<NonTerminal, List<ParseRule>> rules, Collection<Terminal> terminals, Collection<NonTerminal> nonTerminals);
+    public abstract Map<Node, CharSet> computeFirst(Map<NonTerminal, List<ParseRule>> rules, Collection<Terminal> terminals, Collection<NonTerminal> nonTerminals);
 }
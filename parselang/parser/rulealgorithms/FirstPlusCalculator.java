@@ -20,6 +20,6 @@ public abstract class FirstPlusCalculator {
      * @param nonTerminals set of all nonterminals
      * @return FIRST+ set of an LL(1) parser.
      */
-    public abstract Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> computeFirstPlus(Map<NonTerminal, List<ParseRule>> rules, Map<Node, Set<Character>> first, Map<Node, Set<Character>> follow, Collection<NonTerminal> nonTerminals);
+    public abstract Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> computeFirstPlus(Map<NonTerminal, List<ParseRule>> rules, Map<Node, CharSet> first, Map<Node, CharSet> follow, Collection<NonTerminal> nonTerminals);
 
 }
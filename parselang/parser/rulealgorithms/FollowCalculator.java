@@ -23,6 +23,6 @@ public abstract class FollowCalculator {
      * @param nonTerminals set of all nonterminals
      * @return FOLLOW set of an LL(1) parser.
      */
-    public abstract Map<Node, Set<Character>> computeFollow(Node topLevel, Map<Node, Set<Character>> first, Map<NonTerminal, List<ParseRule>> rules, Collection<NonTerminal> nonTerminals);
+    public abstract Map<Node, CharSet> computeFollow(Node topLevel, Map<Node, CharSet> first, Map<NonTerminal, List<ParseRule>> rules, Collection<NonTerminal> nonTerminals);
 
 }
@@ -0,0 +1,698 @@
+package parselang.parser.rulealgorithms;
+
+import parselang.parser.data.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the FIRST, FOLLOW and FIRST+ sets of a grammar up to date while rules are added and removed. Instead of
+ * recomputing every set, it propagates only the changes caused by the added or removed rules with a worklist. The
+ * results are identical to those of the naive calculators. An analysis can also extend the tables of another one, in
+ * which case the sets in them are shared until they change.
+ */
+public class IncrementalGrammarAnalysis {
+
+    private final IncrementalGrammarAnalysis base;
+    private final NonTerminal topLevel;
+    private final Map<NonTerminal, List<ParseRule>> rules;
+    private final Map<Node, CharSet> first;
+    private final Map<Node, CharSet> follow;
+    private final Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> firstPlus;
+    private final NaiveFirstPlusCalculator firstPlusCalc = new NaiveFirstPlusCalculator();
+
+    /**
+     * Nonterminals that have a rule containing a node, indexed by that node. Entries are never removed, so this may
+     * contain nonterminals that no longer use the node, which only costs an unnecessary re-evaluation.
+     */
+    private final Map<Node, Set<NonTerminal>> usedBy = new HashMap<>();
+
+    /**
+     * Nonterminals that have a rule in which a node is preceded by nonterminals only, so that the FIRST set of the rule
+     * may depend on that of the node, indexed by that node. Like {@link #usedBy}, entries are never removed.
+     */
+    private final Map<Node, Set<NonTerminal>> usedInPrefixBy = new HashMap<>();
+
+    /**
+     * Nonterminals that have a rule in which a node directly follows a nonterminal, so that the FOLLOW sets the rule
+     * contributes to depend on the FIRST set of the node, indexed by that node. Like {@link #usedBy}, entries are never
+     * removed.
+     */
+    private final Map<Node, Set<NonTerminal>> usedAfterNonTerminalBy = new HashMap<>();
+
+    /**
+     * Characters each rule adds to the FOLLOW sets of the nonterminals in its right hand side, not counting the FOLLOW
+     * set of its left hand side.
+     */
+    private final Map<ParseRule, Map<NonTerminal, CharSet>> followContributions = new IdentityHashMap<>();
+
+    /**
+     * Number of rules contributing each character to the FOLLOW set of a nonterminal.
+     */
+    private final Map<NonTerminal, Map<Integer, Integer>> followSupport = new HashMap<>();
+
+    /**
+     * Number of rules of each nonterminal that end in a nonterminal, indexed by the nonterminal they end in.
+     */
+    private final Map<NonTerminal, Map<NonTerminal, Integer>> endingIn = new HashMap<>();
+
+    /**
+     * Starts maintaining a set of tables that were computed from scratch.
+     * @param topLevel toplevel nonterminal of the parsing process
+     * @param rules All parse rules sorted by left hand side. This map is modified by the caller, who reports every change.
+     * @param first FIRST set of the rules
+     * @param follow FOLLOW set of the rules
+     * @param firstPlus FIRST+ set of the rules
+     */
+    public IncrementalGrammarAnalysis(NonTerminal topLevel, Map<NonTerminal, List<ParseRule>> rules, Map<Node, CharSet> first, Map<Node, CharSet> follow, Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> firstPlus) {
+        this.base = null;
+        this.topLevel = topLevel;
+        this.rules = rules;
+        this.first = first;
+        this.follow = follow;
+        this.firstPlus = firstPlus;
+        Set<NonTerminal> ignored = new HashSet<>();
+        for (List<ParseRule> rulesForNonTerminal : rules.values()) {
+            for (ParseRule rule : rulesForNonTerminal) {
+                index(rule);
+                countEnding(rule, 1);
+                updateFollowContribution(rule, ignored, ignored);
+            }
+        }
+    }
+
+    /**
+     * Starts maintaining the tables of a grammar that extends the grammar of another analysis. Only the indexes are
+     * copied; a set is copied when it changes for the first time, so the other analysis is never modified.
+     * @param base analysis of the grammar that is extended, which must not change anymore
+     * @param rules All parse rules sorted by left hand side, initially the same as those of the base grammar. This map is
+     *              modified by the caller, who reports every change.
+     */
+    public IncrementalGrammarAnalysis(IncrementalGrammarAnalysis base, Map<NonTerminal, List<ParseRule>> rules) {
+        this.base = base;
+        this.topLevel = base.topLevel;
+        this.rules = rules;
+        this.first = new HashMap<>(base.first);
+        this.follow = new HashMap<>(base.follow);
+        this.firstPlus = new HashMap<>(base.firstPlus);
+        usedBy.putAll(base.usedBy);
+        usedInPrefixBy.putAll(base.usedInPrefixBy);
+        usedAfterNonTerminalBy.putAll(base.usedAfterNonTerminalBy);
+        followContributions.putAll(base.followContributions);
+        followSupport.putAll(base.followSupport);
+        endingIn.putAll(base.endingIn);
+    }
+
+    /**
+     * Returns the FIRST+ set, which is kept up to date.
+     * @return rules to try per nonterminal and lookahead character
+     */
+    public Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> getFirstPlus() {
+        return firstPlus;
+    }
+
+    /**
+     * Updates the tables after rules were added to and removed from the grammar. The removals are processed first, on
+     * the grammar without the added rules, so that the additions are then processed as if they happened afterwards.
+     * @param added rules that were added
+     * @param removed rules that were removed, which must have been reported as added before
+     * @return the nonterminals whose FIRST+ set changed
+     */
+    public Set<NonTerminal> rulesChanged(Collection<ParseRule> added, Collection<ParseRule> removed) {
+        Set<NonTerminal> updated = new HashSet<>();
+        if (!removed.isEmpty()) {
+            Map<NonTerminal, List<ParseRule>> withAdded = withoutRules(added);
+            updated.addAll(rulesRemoved(removed));
+            rules.putAll(withAdded);
+        }
+        if (!added.isEmpty()) {
+            updated.addAll(rulesAdded(added));
+        }
+        return updated;
+    }
+
+    /**
+     * Checks whether the tables are the same as when they are computed from scratch with the naive calculators. This is
+     * as expensive as computing them, so it is meant for assertions.
+     * @return whether the FIRST, FOLLOW and FIRST+ sets of every nonterminal are the same
+     */
+    public boolean agreesWithNaiveCalculators() {
+        Set<Terminal> terminals = new HashSet<>();
+        Set<NonTerminal> nonTerminals = new HashSet<>(rules.keySet());
+        for (List<ParseRule> rulesForNonTerminal : rules.values()) {
+            for (ParseRule rule : rulesForNonTerminal) {
+                for (Node rhsElem : rule.getRHS()) {
+                    Node node = unwrap(rhsElem);
+                    if (node instanceof Terminal) {
+                        terminals.add((Terminal) node);
+                    } else if (node instanceof NonTerminal) {
+                        nonTerminals.add((NonTerminal) node);
+                    }
+                }
+            }
+        }
+        Map<Node, CharSet> expectedFirst = new NaiveFirstCalculator().computeFirst(rules, terminals, nonTerminals);
+        Map<Node, CharSet> expectedFollow = new NaiveFollowCalculator().computeFollow(topLevel, expectedFirst, rules, nonTerminals);
+        Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> expectedFirstPlus = firstPlusCalc.computeFirstPlus(rules, expectedFirst, expectedFollow, nonTerminals);
+        for (NonTerminal nonTerminal : nonTerminals) {
+            if (!expectedFirst.get(nonTerminal).equals(first.get(nonTerminal))
+                    || !expectedFollow.get(nonTerminal).equals(follow.get(nonTerminal))
+                    || !sameRules(firstPlus.get(nonTerminal), expectedFirstPlus.get(nonTerminal))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Set<NonTerminal> rulesAdded(Collection<ParseRule> added) {
+        Set<NonTerminal> changedLhs = new HashSet<>();
+        Deque<Node> firstWorklist = new ArrayDeque<>();
+        for (ParseRule rule : added) {
+            index(rule);
+            changedLhs.add(rule.getLHS());
+        }
+        for (ParseRule rule : added) {
+            if (addFirstOfRule(rule)) {
+                firstWorklist.add(rule.getLHS());
+            }
+        }
+        Set<Node> changedFirst = propagateFirst(firstWorklist, null);
+
+        Set<NonTerminal> grown = new HashSet<>();
+        Set<ParseRule> toEvaluate = rulesFollowing(changedFirst);
+        toEvaluate.addAll(added);
+        for (ParseRule rule : toEvaluate) {
+            updateFollowContribution(rule, grown, new HashSet<>());
+        }
+        for (ParseRule rule : added) {
+            countEnding(rule, 1);
+            Node lastRhs = lastRhs(rule);
+            if (lastRhs != null && writableFollow(lastRhs).addAll(follow.get(rule.getLHS()))) {
+                grown.add((NonTerminal) lastRhs);
+            }
+        }
+        Set<NonTerminal> changedFollow = propagateFollow(grown);
+
+        return updateFirstPlus(changedLhs, changedFirst, changedFollow);
+    }
+
+    private Set<NonTerminal> rulesRemoved(Collection<ParseRule> removed) {
+        Set<NonTerminal> changedLhs = new HashSet<>();
+        Set<NonTerminal> shrunk = new HashSet<>();
+        Set<NonTerminal> grown = new HashSet<>();
+        for (ParseRule rule : removed) {
+            changedLhs.add(rule.getLHS());
+            countEnding(rule, -1);
+            Node lastRhs = lastRhs(rule);
+            if (lastRhs != null) {
+                shrunk.add((NonTerminal) lastRhs);
+            }
+            Map<NonTerminal, CharSet> contribution = followContributions.remove(rule);
+            if (contribution != null) {
+                count(contribution, -1, grown, shrunk);
+            }
+        }
+
+        Set<Node> changedFirst = removeFirst(removed);
+
+        for (ParseRule rule : rulesFollowing(changedFirst)) {
+            updateFollowContribution(rule, grown, shrunk);
+        }
+        Set<NonTerminal> followRegion = new HashSet<>();
+        Deque<NonTerminal> toVisit = new ArrayDeque<>(shrunk);
+        while (!toVisit.isEmpty()) {
+            NonTerminal nonTerminal = toVisit.pop();
+            if (followRegion.add(nonTerminal)) {
+                for (ParseRule rule : rules.getOrDefault(nonTerminal, Collections.emptyList())) {
+                    Node lastRhs = lastRhs(rule);
+                    if (lastRhs != null) {
+                        toVisit.push((NonTerminal) lastRhs);
+                    }
+                }
+            }
+        }
+        Map<NonTerminal, CharSet> oldFollow = new HashMap<>();
+        for (NonTerminal nonTerminal : followRegion) {
+            CharSet reset = new CharSet();
+            followSupport.getOrDefault(nonTerminal, Collections.emptyMap()).keySet().forEach(reset::add);
+            if (nonTerminal.equals(topLevel)) {
+                reset.add(CharSet.EPSILON);
+            }
+            oldFollow.put(nonTerminal, follow.put(nonTerminal, reset));
+        }
+        for (NonTerminal nonTerminal : followRegion) {
+            for (NonTerminal endsIn : endingIn.getOrDefault(nonTerminal, Collections.emptyMap()).keySet()) {
+                if (!followRegion.contains(endsIn)) {
+                    follow.get(nonTerminal).addAll(follow.get(endsIn));
+                }
+            }
+        }
+        grown.addAll(followRegion);
+        Set<NonTerminal> changedFollow = propagateFollow(grown);
+        for (NonTerminal nonTerminal : followRegion) {
+            if (follow.get(nonTerminal).equals(oldFollow.get(nonTerminal))) {
+                changedFollow.remove(nonTerminal);
+            }
+        }
+
+        return updateFirstPlus(changedLhs, changedFirst, changedFollow);
+    }
+
+    /**
+     * Removes the characters that removed rules contributed to FIRST sets, by deleting and rederiving them. Every
+     * character a removed rule contributed is deleted from its left hand side, and deletions are propagated to the
+     * nonterminals that use a node in a position that contributed to their FIRST set. The nodes that lost characters are
+     * then rederived from their remaining rules, so only nonterminals that may have lost a character are visited.
+     * @param removed rules that were removed, which are no longer in the rule lists
+     * @return the nodes whose FIRST set changed
+     */
+    private Set<Node> removeFirst(Collection<ParseRule> removed) {
+        Map<Node, CharSet> oldFirst = new HashMap<>();
+        Map<Node, CharSet> lost = new HashMap<>();
+        Deque<Node> worklist = new ArrayDeque<>();
+        List<CharSet> contributions = new ArrayList<>();
+        for (ParseRule rule : removed) {
+            contributions.add(firstOfSequence(rule.getRHS(), 0, oldFirst));
+        }
+        Iterator<CharSet> contribution = contributions.iterator();
+        for (ParseRule rule : removed) {
+            delete(rule.getLHS(), contribution.next(), oldFirst, lost, worklist);
+        }
+        while (!worklist.isEmpty()) {
+            Node node = worklist.pop();
+            CharSet deleted = lost.remove(node);
+            for (NonTerminal user : usedInPrefixBy.getOrDefault(node, Collections.emptySet())) {
+                for (ParseRule rule : rules.getOrDefault(user, Collections.emptyList())) {
+                    List<Node> rhs = rule.getRHS();
+                    for (int i = 0; i < rhs.size(); i++) {
+                        Node rhsNode = unwrap(rhs.get(i));
+                        if (rhsNode.equals(node)) {
+                            delete(user, deleted.containsEpsilon() ? firstOfSequence(rhs, i, oldFirst) : deleted, oldFirst, lost, worklist);
+                            break;
+                        }
+                        if (!oldFirst.getOrDefault(rhsNode, first.get(rhsNode)).containsEpsilon()) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        Deque<Node> rederived = new ArrayDeque<>();
+        for (Node node : oldFirst.keySet()) {
+            for (ParseRule rule : rules.getOrDefault((NonTerminal) node, Collections.emptyList())) {
+                if (addFirstOfRule(rule)) {
+                    rederived.add(node);
+                }
+            }
+        }
+        propagateFirst(rederived, oldFirst.keySet());
+        Set<Node> changedFirst = new HashSet<>();
+        for (Map.Entry<Node, CharSet> entry : oldFirst.entrySet()) {
+            if (!first.get(entry.getKey()).equals(entry.getValue())) {
+                changedFirst.add(entry.getKey());
+            }
+        }
+        return changedFirst;
+    }
+
+    /**
+     * Deletes characters from the FIRST set of a nonterminal, and schedules the deletion to be propagated to its users.
+     * The set is replaced rather than modified, since it may be shared with the base analysis.
+     * @param nonTerminal the nonterminal
+     * @param chars characters to delete, of which those that are not in the set are ignored
+     * @param oldFirst receives the FIRST set before the first deletion
+     * @param lost characters deleted but not yet propagated, per node
+     * @param worklist receives the nonterminal if it lost a character that was not yet scheduled
+     */
+    private void delete(NonTerminal nonTerminal, CharSet chars, Map<Node, CharSet> oldFirst, Map<Node, CharSet> lost, Deque<Node> worklist) {
+        CharSet current = first.get(nonTerminal);
+        CharSet kept = new CharSet();
+        CharSet deleted = new CharSet();
+        current.forEach(c -> (chars.contains(c) ? deleted : kept).add(c));
+        if (deleted.isEmpty()) {
+            return;
+        }
+        oldFirst.putIfAbsent(nonTerminal, current);
+        first.put(nonTerminal, kept);
+        if (!lost.containsKey(nonTerminal)) {
+            lost.put(nonTerminal, deleted);
+            worklist.add(nonTerminal);
+        } else {
+            lost.get(nonTerminal).addAll(deleted);
+        }
+    }
+
+    /**
+     * Computes what a part of the right hand side of a rule contributes to the FIRST set of its left hand side, in the
+     * same way as {@link #addFirstOfRule(ParseRule)}, with the FIRST sets from before any deletion.
+     * @param rhs right hand side of the rule
+     * @param from index of the first node of the part
+     * @param oldFirst FIRST sets of the nodes that characters were deleted from
+     * @return the contributed characters
+     */
+    private CharSet firstOfSequence(List<Node> rhs, int from, Map<Node, CharSet> oldFirst) {
+        CharSet res = new CharSet();
+        if (from == rhs.size()) {
+            res.add(CharSet.EPSILON);
+        }
+        for (int i = from; i < rhs.size(); i++) {
+            Node node = unwrap(rhs.get(i));
+            CharSet elemFirst = oldFirst.getOrDefault(node, first.get(node));
+            res.addAll(elemFirst);
+            if (!elemFirst.containsEpsilon()) {
+                break;
+            }
+            res.add(CharSet.EPSILON);
+        }
+        return res;
+    }
+
+    /**
+     * Replaces the rule lists that contain some of the given rules by lists without them. The lists of the caller are
+     * not modified.
+     * @param toHide rules to leave out
+     * @return the replaced lists, to be put back
+     */
+    private Map<NonTerminal, List<ParseRule>> withoutRules(Collection<ParseRule> toHide) {
+        Set<ParseRule> hidden = Collections.newSetFromMap(new IdentityHashMap<>());
+        hidden.addAll(toHide);
+        Map<NonTerminal, List<ParseRule>> replaced = new HashMap<>();
+        for (ParseRule rule : toHide) {
+            NonTerminal lhs = rule.getLHS();
+            if (!replaced.containsKey(lhs)) {
+                List<ParseRule> rulesForNonTerminal = rules.get(lhs);
+                replaced.put(lhs, rulesForNonTerminal);
+                List<ParseRule> visible = new ArrayList<>(rulesForNonTerminal);
+                visible.removeIf(hidden::contains);
+                rules.put(lhs, visible);
+            }
+        }
+        return replaced;
+    }
+
+    private void index(ParseRule rule) {
+        NonTerminal lhs = rule.getLHS();
+        first.computeIfAbsent(lhs, node -> new CharSet());
+        follow.computeIfAbsent(lhs, node -> new CharSet());
+        firstPlus.computeIfAbsent(lhs, node -> new HashMap<>());
+        List<Node> rhs = rule.getRHS();
+        boolean inPrefix = true;
+        for (int i = 0; i < rhs.size(); i++) {
+            Node node = unwrap(rhs.get(i));
+            writable(analysis -> analysis.usedBy, node, n -> new HashSet<>(), HashSet::new).add(lhs);
+            if (inPrefix) {
+                writable(analysis -> analysis.usedInPrefixBy, node, n -> new HashSet<>(), HashSet::new).add(lhs);
+            }
+            if (i > 0 && rhs.get(i - 1) instanceof NonTerminal) {
+                writable(analysis -> analysis.usedAfterNonTerminalBy, node, n -> new HashSet<>(), HashSet::new).add(lhs);
+            }
+            if (node instanceof Terminal) {
+                inPrefix = false;
+                first.computeIfAbsent(node, n -> CharSet.of(((Terminal) n).getValue().charAt(0)));
+            } else {
+                first.computeIfAbsent(node, n -> new CharSet());
+                follow.computeIfAbsent(node, n -> new CharSet());
+                firstPlus.computeIfAbsent((NonTerminal) node, n -> new HashMap<>());
+            }
+        }
+    }
+
+    /**
+     * Propagates FIRST changes to every nonterminal that uses a changed node.
+     * @param worklist nodes whose FIRST set changed
+     * @param region if not null, only nonterminals in this set are updated
+     * @return all nodes whose FIRST set changed
+     */
+    private Set<Node> propagateFirst(Deque<Node> worklist, Set<Node> region) {
+        Set<Node> changed = new HashSet<>(worklist);
+        while (!worklist.isEmpty()) {
+            Node node = worklist.pop();
+            for (NonTerminal user : usedInPrefixBy.getOrDefault(node, Collections.emptySet())) {
+                if (region != null && !region.contains(user)) {
+                    continue;
+                }
+                boolean userChanged = false;
+                for (ParseRule rule : rules.get(user)) {
+                    if (inFirstPrefix(rule, node)) {
+                        userChanged |= addFirstOfRule(rule);
+                    }
+                }
+                if (userChanged) {
+                    changed.add(user);
+                    worklist.add(user);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Propagates FOLLOW changes from the left hand side of rules to the nonterminal they end in.
+     * @param grown nonterminals whose FOLLOW set grew
+     * @return all nonterminals whose FOLLOW set grew
+     */
+    private Set<NonTerminal> propagateFollow(Collection<NonTerminal> grown) {
+        Set<NonTerminal> changed = new HashSet<>(grown);
+        Deque<NonTerminal> worklist = new ArrayDeque<>(grown);
+        while (!worklist.isEmpty()) {
+            NonTerminal nonTerminal = worklist.pop();
+            for (ParseRule rule : rules.getOrDefault(nonTerminal, Collections.emptyList())) {
+                Node lastRhs = lastRhs(rule);
+                if (lastRhs != null && writableFollow(lastRhs).addAll(follow.get(nonTerminal))) {
+                    changed.add((NonTerminal) lastRhs);
+                    worklist.add((NonTerminal) lastRhs);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private Set<NonTerminal> updateFirstPlus(Set<NonTerminal> changedLhs, Set<Node> changedFirst, Set<NonTerminal> changedFollow) {
+        Set<NonTerminal> toUpdate = new HashSet<>(changedLhs);
+        toUpdate.addAll(changedFollow);
+        for (Node node : changedFirst) {
+            for (NonTerminal user : usedInPrefixBy.getOrDefault(node, Collections.emptySet())) {
+                if (!toUpdate.contains(user) && rules.getOrDefault(user, Collections.emptyList()).stream().anyMatch(rule -> inFirstPrefix(rule, node))) {
+                    toUpdate.add(user);
+                }
+            }
+        }
+        Set<NonTerminal> changed = new HashSet<>();
+        for (NonTerminal nonTerminal : toUpdate) {
+            Map<Character, TreeSet<ParseRule>> computed = firstPlusCalc.computeFirstPlus(nonTerminal, rules.getOrDefault(nonTerminal, Collections.emptyList()), first, follow);
+            if (!sameRules(firstPlus.put(nonTerminal, computed), computed)) {
+                changed.add(nonTerminal);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks whether two FIRST+ sets of a nonterminal contain the same rule objects in the same order for every lookahead
+     */
+    private static boolean sameRules(Map<Character, TreeSet<ParseRule>> old, Map<Character, TreeSet<ParseRule>> computed) {
+        if (old == null || !old.keySet().equals(computed.keySet())) {
+            return false;
+        }
+        for (Map.Entry<Character, TreeSet<ParseRule>> entry : computed.entrySet()) {
+            TreeSet<ParseRule> oldRules = old.get(entry.getKey());
+            if (oldRules.size() != entry.getValue().size()) {
+                return false;
+            }
+            Iterator<ParseRule> oldIt = oldRules.iterator();
+            for (ParseRule rule : entry.getValue()) {
+                if (rule != oldIt.next()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the FIRST set of the right hand side of a rule to the FIRST set of its left hand side, in the same way as
+     * {@link NaiveFirstCalculator}.
+     * @param rule rule to evaluate
+     * @return whether the FIRST set of the left hand side changed
+     */
+    private boolean addFirstOfRule(ParseRule rule) {
+        CharSet target = writable(analysis -> analysis.first, rule.getLHS(), node -> new CharSet(), CharSet::copy);
+        if (rule.getRHS().isEmpty()) {
+            return target.add(CharSet.EPSILON);
+        }
+        boolean changed = false;
+        for (Node rhsElem : rule.getRHS()) {
+            CharSet elemFirst = first.get(unwrap(rhsElem));
+            changed |= target.addAll(elemFirst);
+            if (!elemFirst.containsEpsilon()) {
+                break;
+            }
+            changed |= target.add(CharSet.EPSILON);
+        }
+        return changed;
+    }
+
+    /**
+     * Recalculates the characters a rule adds to FOLLOW sets, in the same way as {@link NaiveFollowCalculator}, and
+     * adds characters that gained their first supporting rule to the FOLLOW sets.
+     * @param rule rule to evaluate
+     * @param grown receives nonterminals whose FOLLOW set grew
+     * @param shrunk receives nonterminals that lost the last rule supporting a character
+     */
+    private void updateFollowContribution(ParseRule rule, Set<NonTerminal> grown, Set<NonTerminal> shrunk) {
+        List<Node> rhs = rule.getRHS();
+        Map<NonTerminal, CharSet> contribution = new HashMap<>();
+        CharSet toAdd = new CharSet();
+        for (int i = rhs.size() - 1; i >= 1; i--) {
+            Node previous = rhs.get(i - 1);
+            if (!(previous instanceof NonTerminal)) {
+                toAdd = new CharSet();
+                continue;
+            }
+            toAdd.addAll(first.get(unwrap(rhs.get(i))));
+            contribution.computeIfAbsent((NonTerminal) previous, nonTerminal -> new CharSet()).addAll(toAdd);
+            if (!first.get(previous).containsEpsilon()) {
+                toAdd = new CharSet();
+            }
+        }
+        count(contribution, 1, grown, shrunk);
+        Map<NonTerminal, CharSet> old = followContributions.put(rule, contribution);
+        if (old != null) {
+            count(old, -1, grown, shrunk);
+        }
+    }
+
+    private void count(Map<NonTerminal, CharSet> contribution, int delta, Set<NonTerminal> grown, Set<NonTerminal> shrunk) {
+        for (Map.Entry<NonTerminal, CharSet> entry : contribution.entrySet()) {
+            NonTerminal target = entry.getKey();
+            Map<Integer, Integer> support = writable(analysis -> analysis.followSupport, target, nonTerminal -> new HashMap<>(), HashMap::new);
+            entry.getValue().forEach(element -> {
+                int count = support.merge(element, delta, Integer::sum);
+                if (count == 0) {
+                    support.remove(element);
+                    shrunk.add(target);
+                } else if (count == delta && writableFollow(target).add(element)) {
+                    grown.add(target);
+                }
+            });
+        }
+    }
+
+    private void countEnding(ParseRule rule, int delta) {
+        Node lastRhs = lastRhs(rule);
+        if (lastRhs != null) {
+            Map<NonTerminal, Integer> endings = writable(analysis -> analysis.endingIn, (NonTerminal) lastRhs, nonTerminal -> new HashMap<>(), HashMap::new);
+            if (endings.merge(rule.getLHS(), delta, Integer::sum) == 0) {
+                endings.remove(rule.getLHS());
+            }
+        }
+    }
+
+    /**
+     * Returns the nonterminals that have a rule from which one of the given nonterminals can be reached, including the
+     * given ones. The result may contain nonterminals that no longer reach them.
+     * @param nonTerminals nonterminals to start from
+     * @return the given nonterminals and everything that depends on them
+     */
+    public Set<Node> dependents(Collection<NonTerminal> nonTerminals) {
+        Set<Node> res = new HashSet<>();
+        Deque<Node> toVisit = new ArrayDeque<>(nonTerminals);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (res.add(node)) {
+                toVisit.addAll(usedBy.getOrDefault(node, Collections.emptySet()));
+            }
+        }
+        return res;
+    }
+
+    private CharSet writableFollow(Node nonTerminal) {
+        return writable(analysis -> analysis.follow, nonTerminal, node -> new CharSet(), CharSet::copy);
+    }
+
+    /**
+     * Returns the value of a table entry so that it can be modified, creating it if it is missing. A value that is still
+     * shared with the base analysis is replaced by a copy first.
+     * @param table selects the table of an analysis
+     * @param key key of the entry
+     * @param create creates a missing value
+     * @param copy copies a shared value
+     * @return a value that only this analysis uses
+     */
+    private <K, V> V writable(Function<IncrementalGrammarAnalysis, Map<K, V>> table, K key, Function<K, V> create, UnaryOperator<V> copy) {
+        Map<K, V> own = table.apply(this);
+        V value = own.computeIfAbsent(key, create);
+        if (base != null && value == table.apply(base).get(key)) {
+            value = copy.apply(value);
+            own.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the rules in which one of the given nodes directly follows a nonterminal, which are the rules whose
+     * contribution to FOLLOW sets depends on the FIRST sets of the nodes.
+     * @param nodes nodes whose FIRST set changed
+     * @return the rules
+     */
+    private Set<ParseRule> rulesFollowing(Collection<? extends Node> nodes) {
+        Set<ParseRule> res = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : nodes) {
+            for (NonTerminal user : usedAfterNonTerminalBy.getOrDefault(node, Collections.emptySet())) {
+                for (ParseRule rule : rules.get(user)) {
+                    List<Node> rhs = rule.getRHS();
+                    for (int i = 1; i < rhs.size(); i++) {
+                        if (rhs.get(i - 1) instanceof NonTerminal && unwrap(rhs.get(i)).equals(node)) {
+                            res.add(rule);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Checks whether a node is part of the prefix of the right hand side of a rule that the FIRST set of the rule is
+     * computed from, which ends at the first node that cannot be empty
+     * @param rule the rule
+     * @param node the node
+     * @return whether the FIRST set of the rule depends on that of the node
+     */
+    private boolean inFirstPrefix(ParseRule rule, Node node) {
+        for (Node rhsElem : rule.getRHS()) {
+            Node elem = unwrap(rhsElem);
+            if (elem.equals(node)) {
+                return true;
+            }
+            if (!first.get(elem).containsEpsilon()) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the last node of the right hand side of a rule if it is a nonterminal, since only then it inherits the
+     * FOLLOW set of the left hand side.
+     * @param rule the rule
+     * @return the last node, or null if the rule is empty or does not end in a nonterminal
+     */
+    private static Node lastRhs(ParseRule rule) {
+        List<Node> rhs = rule.getRHS();
+        if (rhs.isEmpty() || !(rhs.get(rhs.size() - 1) instanceof NonTerminal)) {
+            return null;
+        }
+        return rhs.get(rhs.size() - 1);
+    }
+
+    private static Node unwrap(Node node) {
+        while (node instanceof BoundNode) {
+            node = ((BoundNode) node).getContent();
+        }
+        return node;
+    }
+}
@@ -0,0 +1,66 @@
+package parselang.parser.rulealgorithms;
+
+import parselang.parser.data.ParseRule;
+
+import java.util.*;
+
+/**
+ * Compiled FIRST+ set of a single nonterminal. The rules to try are stored as immutable lists, found with an array
+ * lookup for ASCII characters and a map lookup for other characters. Characters without an entry of their own, as well
+ * as the end of the input, get the rules that apply to every lookahead.
+ */
+public final class LookaheadTable {
+
+    /**
+     * Lookahead value that represents the end of the input.
+     */
+    public static final int END = -1;
+
+    private static final int DENSE_SIZE = 128;
+
+    private final List<ParseRule>[] dense;
+    private final Map<Character, List<ParseRule>> sparse = new HashMap<>();
+    private final List<ParseRule> fallback;
+
+    /**
+     * Compiles the FIRST+ set of a nonterminal
+     * @param firstPlus rules to try per lookahead character, where the null key holds the rules to try for any other
+     *                  lookahead and at the end of the input
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LookaheadTable(Map<Character, ? extends Collection<ParseRule>> firstPlus) {
+        fallback = firstPlus.containsKey(null) ? freeze(firstPlus.get(null)) : Collections.emptyList();
+        dense = new List[DENSE_SIZE];
+        Arrays.fill(dense, fallback);
+        for (Map.Entry<Character, ? extends Collection<ParseRule>> entry : firstPlus.entrySet()) {
+            Character key = entry.getKey();
+            if (key == null) {
+                continue;
+            }
+            if (key < DENSE_SIZE) {
+                dense[key] = freeze(entry.getValue());
+            } else {
+                sparse.put(key, freeze(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Returns the rules to try, in order of priority
+     * @param lookahead the next character of the input, or {@link #END} at the end of the input
+     * @return an immutable list of rules
+     */
+    public List<ParseRule> get(int lookahead) {
+        if (lookahead >= 0 && lookahead < DENSE_SIZE) {
+            return dense[lookahead];
+        }
+        if (lookahead == END) {
+            return fallback;
+        }
+        return sparse.getOrDefault((char) lookahead, fallback);
+    }
+
+    private static List<ParseRule> freeze(Collection<ParseRule> rules) {
+        return Collections.unmodifiableList(Arrays.asList(rules.toArray(new ParseRule[0])));
+    }
+}
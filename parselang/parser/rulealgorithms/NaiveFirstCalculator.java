@@ -13,13 +13,13 @@ public class NaiveFirstCalculator extends FirstCalculator {
      * @inheritDoc
      */
     @Override
-    public Map<Node, Set<Character>> computeFirst(Map<NonTerminal, List<ParseRule>> rules, Collection<Terminal> terminals, Collection<NonTerminal> nonTerminals) {
-        Map<Node, Set<Character>> first = new HashMap<>();
+    public Map<Node, CharSet> computeFirst(Map<NonTerminal, List<ParseRule>> rules, Collection<Terminal> terminals, Collection<NonTerminal> nonTerminals) {
+        Map<Node, CharSet> first = new HashMap<>();
         for (Terminal term : terminals) {
-            first.computeIfAbsent(term, node -> Collections.singleton(term.getValue().charAt(0)));
+            first.computeIfAbsent(term, node -> CharSet.of(term.getValue().charAt(0)));
         }
         for (NonTerminal nt : nonTerminals) {
-            first.computeIfAbsent(nt, node -> new HashSet<>());
+            first.computeIfAbsent(nt, node -> new CharSet());
             for (ParseRule rule : rules.get(nt)) {
                 if (rule.getRHS().size() > 0 && rule.getRHS().get(0) instanceof Terminal) {
                     first.get(nt).add((((Terminal) rule.getRHS().get(0)).getValue().charAt(0)));
@@ -33,7 +33,7 @@ public class NaiveFirstCalculator extends FirstCalculator {
             for (NonTerminal nt : nonTerminals) {
                 for (ParseRule rule : rules.get(nt)) {
                     if (rule.getRHS().isEmpty()) {
-                        if (first.get(nt).add(null)) {
+                        if (first.get(nt).add(CharSet.EPSILON)) {
                             changed = true;
                         }
                         continue;
@@ -48,10 +48,10 @@ public class NaiveFirstCalculator extends FirstCalculator {
                         if (first.get(nt).addAll(first.get(rhsElem))) {
                             changed = true;
                         }
-                        if (!first.get(rhsElem).contains(null)) {
+                        if (!first.get(rhsElem).containsEpsilon()) {
                             break;
                         }
-                        if (first.get(nt).add(null)) {
+                        if (first.get(nt).add(CharSet.EPSILON)) {
                             changed = true;
                         }
                     }
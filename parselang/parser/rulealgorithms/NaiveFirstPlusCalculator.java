@@ -3,7 +3,6 @@ package parselang.parser.rulealgorithms;
 import parselang.parser.data.*;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Default FIRST+ calculator
@@ -14,33 +13,51 @@ public class NaiveFirstPlusCalculator extends FirstPlusCalculator {
      * @inheritDoc
      */
     @Override
-    public Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> computeFirstPlus(Map<NonTerminal, List<ParseRule>> rules, Map<Node, Set<Character>> first, Map<Node, Set<Character>> follow, Collection<NonTerminal> nonTerminals) {
+    public Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> computeFirstPlus(Map<NonTerminal, List<ParseRule>> rules, Map<Node, CharSet> first, Map<Node, CharSet> follow, Collection<NonTerminal> nonTerminals) {
         Map<NonTerminal, Map<Character, TreeSet<ParseRule>>> rulesPlus = new HashMap<>();
         for (NonTerminal nonTerminal : nonTerminals) {
-            rulesPlus.computeIfAbsent(nonTerminal, nonTerminal1 -> new HashMap<>());
+            rulesPlus.put(nonTerminal, computeFirstPlus(nonTerminal, rules.get(nonTerminal), first, follow));
         }
-        for (NonTerminal nonTerminal : nonTerminals) {
-            for (ParseRule rule : rules.get(nonTerminal)) {
-                Set<Character> firstOfRhs = firstOfList(rule.getRHS(), first);
-                for (Character character : firstOfRhs) {
-                    rulesPlus.get(nonTerminal).computeIfAbsent(character, character1 -> new TreeSet<>(Comparator.comparingInt(value -> rules.get(nonTerminal).indexOf(value))));
-                    rulesPlus.get(nonTerminal).get(character).add(rule);
-                    rulesPlus.get(nonTerminal).get(character).addAll(rulesPlus.get(nonTerminal).getOrDefault(null, new TreeSet<>(Comparator.comparingInt(value -> rules.get(nonTerminal).indexOf(value)))));
-                }
-                if (firstOfRhs.contains(null)) {
-                    for (Character character : follow.get(nonTerminal)) {
-                        rulesPlus.get(nonTerminal).computeIfAbsent(character, character1 -> new TreeSet<>(Comparator.comparingInt(value -> rules.get(nonTerminal).indexOf(value))));
-                        rulesPlus.get(nonTerminal).get(character).add(rule);
-                    }
+        return rulesPlus;
+    }
+
+    /**
+     * Calculates the FIRST+ set of a single nonterminal.
+     * @param nonTerminal nonterminal to calculate the FIRST+ set of
+     * @param rules parse rules with this nonterminal as left hand side, in order of priority
+     * @param first FIRST set of this LL(1) parser
+     * @param follow FOLLOW set of this LL(1) parser
+     * @return rules to try per lookahead character
+     */
+    public Map<Character, TreeSet<ParseRule>> computeFirstPlus(NonTerminal nonTerminal, List<ParseRule> rules, Map<Node, CharSet> first, Map<Node, CharSet> follow) {
+        Map<ParseRule, Integer> priority = new HashMap<>();
+        for (ParseRule rule : rules) {
+            priority.putIfAbsent(rule, priority.size());
+        }
+        Comparator<ParseRule> byPriority = Comparator.comparingInt(priority::get);
+        Map<Character, TreeSet<ParseRule>> rulesPlus = new HashMap<>();
+        for (ParseRule rule : rules) {
+            CharSet firstOfRhs = firstOfList(rule.getRHS(), first);
+            firstOfRhs.forEach(element -> {
+                Character character = element == CharSet.EPSILON ? null : (char) element;
+                rulesPlus.computeIfAbsent(character, character1 -> new TreeSet<>(byPriority));
+                rulesPlus.get(character).add(rule);
+                if (rulesPlus.containsKey(null)) {
+                    rulesPlus.get(character).addAll(rulesPlus.get(null));
                 }
+            });
+            if (firstOfRhs.containsEpsilon()) {
+                follow.get(nonTerminal).forEach(element -> {
+                    Character character = element == CharSet.EPSILON ? null : (char) element;
+                    rulesPlus.computeIfAbsent(character, character1 -> new TreeSet<>(byPriority));
+                    rulesPlus.get(character).add(rule);
+                });
             }
         }
-        for (NonTerminal nonTerminal : nonTerminals) {
-            if (rulesPlus.get(nonTerminal).containsKey(null)) {
-                for (Map.Entry<Character, TreeSet<ParseRule>> rule : rulesPlus.get(nonTerminal).entrySet()) {
-                    if (rule.getKey() != null) {
-                        rule.getValue().addAll(rulesPlus.get(nonTerminal).get(null));
-                    }
+        if (rulesPlus.containsKey(null)) {
+            for (Map.Entry<Character, TreeSet<ParseRule>> rule : rulesPlus.entrySet()) {
+                if (rule.getKey() != null) {
+                    rule.getValue().addAll(rulesPlus.get(null));
                 }
             }
         }
@@ -48,21 +65,21 @@ public class NaiveFirstPlusCalculator extends FirstPlusCalculator {
     }
 
 
-    private Set<Character> firstOfList(List<Node> list, Map<Node, Set<Character>> first) {
-        list = list.stream().map(node -> {
+    private CharSet firstOfList(List<Node> list, Map<Node, CharSet> first) {
+        CharSet res = new CharSet();
+        if (list.isEmpty()) {
+            res.add(CharSet.EPSILON);
+            return res;
+        }
+        for (Node node : list) {
             if (node instanceof BoundNode) {
                 node = ((BoundNode) node).getContent();
             }
-            return node;
-        }).collect(Collectors.toList());
-        if (list.isEmpty()) {
-            return Collections.singleton(null);
-        } else if (!first.get(list.get(0)).contains(null)) {
-            return first.get(list.get(0));
-        } else {
-            Set<Character> firstOfTail = new HashSet<>(firstOfList(list.subList(1, list.size()), first));
-            firstOfTail.addAll(first.get(list.get(0)));
-            return firstOfTail;
+            res.addAll(first.get(node));
+            if (!first.get(node).containsEpsilon()) {
+                break;
+            }
         }
+        return res;
     }
 }
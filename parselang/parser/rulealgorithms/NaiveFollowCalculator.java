@@ -14,12 +14,12 @@ public class NaiveFollowCalculator extends FollowCalculator {
      * @inheritDoc
      */
     @Override
-    public Map<Node, Set<Character>> computeFollow(Node topLevel, Map<Node, Set<Character>> first, Map<NonTerminal, List<ParseRule>> rules, Collection<NonTerminal> nonTerminals) {
-        Map<Node, Set<Character>> follow = new HashMap<>();
+    public Map<Node, CharSet> computeFollow(Node topLevel, Map<Node, CharSet> first, Map<NonTerminal, List<ParseRule>> rules, Collection<NonTerminal> nonTerminals) {
+        Map<Node, CharSet> follow = new HashMap<>();
         for (NonTerminal nt : nonTerminals) {
-            follow.put(nt, new HashSet<>());
+            follow.put(nt, new CharSet());
         }
-        follow.get(topLevel).add(null);
+        follow.get(topLevel).add(CharSet.EPSILON);
         boolean changed = true;
         while (changed) {
             changed = false;
@@ -34,7 +34,7 @@ public class NaiveFollowCalculator extends FollowCalculator {
                             changed = true;
                         }
                     }
-                    Set<Character> toAdd = new HashSet<>();
+                    CharSet toAdd = new CharSet();
 
                     List<Node> rhscopy = new ArrayList<>(rule.getRHS());
                     Collections.reverse(rhscopy);
@@ -47,15 +47,15 @@ public class NaiveFollowCalculator extends FollowCalculator {
                             continue;
                         }
                         if (!(toView.peek() instanceof  NonTerminal)) {
-                            toAdd = new HashSet<>();
+                            toAdd = new CharSet();
                             continue;
                         }
                         toAdd.addAll(first.get(last));
                         if (follow.get(toView.peek()).addAll(toAdd)) {
                             changed = true;
                         }
-                        if (!first.get(toView.peek()).contains(null)) {
-                            toAdd = new HashSet<>();
+                        if (!first.get(toView.peek()).containsEpsilon()) {
+                            toAdd = new CharSet();
                         }
                     }
                 }
@@ -0,0 +1,93 @@
+package parselang.parser.rulealgorithms;
+
+import parselang.parser.data.*;
+
+import java.util.*;
+
+/**
+ * FIRST calculator that solves the strongly connected components of the nonterminal dependency graph one at a time,
+ * starting with those that do not depend on any other component. Within a component, only nonterminals that use a
+ * changed nonterminal are evaluated again.
+ */
+public class SCCFirstCalculator extends FirstCalculator {
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<Node, CharSet> computeFirst(Map<NonTerminal, List<ParseRule>> rules, Collection<Terminal> terminals, Collection<NonTerminal> nonTerminals) {
+        Map<Node, CharSet> first = new HashMap<>();
+        for (Terminal term : terminals) {
+            first.computeIfAbsent(term, node -> CharSet.of(term.getValue().charAt(0)));
+        }
+        Map<NonTerminal, Set<NonTerminal>> uses = new HashMap<>();
+        for (NonTerminal nt : nonTerminals) {
+            first.put(nt, new CharSet());
+            Set<NonTerminal> used = new HashSet<>();
+            for (ParseRule rule : rules.get(nt)) {
+                for (Node rhsElem : rule.getRHS()) {
+                    Node node = unwrap(rhsElem);
+                    if (node instanceof NonTerminal) {
+                        used.add((NonTerminal) node);
+                    }
+                }
+            }
+            uses.put(nt, used);
+        }
+
+        for (List<NonTerminal> component : StronglyConnectedComponents.compute(nonTerminals, uses::get)) {
+            Map<NonTerminal, List<NonTerminal>> usedIn = new HashMap<>();
+            for (NonTerminal nt : component) {
+                usedIn.put(nt, new ArrayList<>());
+            }
+            for (NonTerminal nt : component) {
+                for (NonTerminal used : uses.get(nt)) {
+                    if (usedIn.containsKey(used)) {
+                        usedIn.get(used).add(nt);
+                    }
+                }
+            }
+            Deque<NonTerminal> worklist = new ArrayDeque<>(component);
+            Set<NonTerminal> queued = new HashSet<>(component);
+            while (!worklist.isEmpty()) {
+                NonTerminal nt = worklist.pop();
+                queued.remove(nt);
+                boolean changed = false;
+                for (ParseRule rule : rules.get(nt)) {
+                    changed |= addFirstOfRule(first.get(nt), rule, first);
+                }
+                if (changed) {
+                    for (NonTerminal user : usedIn.get(nt)) {
+                        if (queued.add(user)) {
+                            worklist.add(user);
+                        }
+                    }
+                }
+            }
+        }
+        return first;
+    }
+
+    private static boolean addFirstOfRule(CharSet target, ParseRule rule, Map<Node, CharSet> first) {
+        if (rule.getRHS().isEmpty()) {
+            return target.add(CharSet.EPSILON);
+        }
+        boolean changed = false;
+        for (Node rhsElem : rule.getRHS()) {
+            CharSet elemFirst = first.get(unwrap(rhsElem));
+            changed |= target.addAll(elemFirst);
+            if (!elemFirst.containsEpsilon()) {
+                break;
+            }
+            changed |= target.add(CharSet.EPSILON);
+        }
+        return changed;
+    }
+
+    private static Node unwrap(Node node) {
+        while (node instanceof BoundNode) {
+            node = ((BoundNode) node).getContent();
+        }
+        return node;
+    }
+}
@@ -0,0 +1,87 @@
+package parselang.parser.rulealgorithms;
+
+import parselang.parser.data.*;
+
+import java.util.*;
+
+/**
+ * FOLLOW calculator that first adds everything that only depends on the FIRST set, and then passes the FOLLOW set of
+ * each nonterminal on to the nonterminals its rules end in. The latter is done per strongly connected component of
+ * that graph, starting with those that do not receive anything from other components.
+ */
+public class SCCFollowCalculator extends FollowCalculator {
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Map<Node, CharSet> computeFollow(Node topLevel, Map<Node, CharSet> first, Map<NonTerminal, List<ParseRule>> rules, Collection<NonTerminal> nonTerminals) {
+        Map<Node, CharSet> follow = new HashMap<>();
+        for (NonTerminal nt : nonTerminals) {
+            follow.put(nt, new CharSet());
+        }
+        follow.get(topLevel).add(CharSet.EPSILON);
+
+        Map<NonTerminal, Set<NonTerminal>> endsIn = new HashMap<>();
+        for (NonTerminal nt : nonTerminals) {
+            Set<NonTerminal> ends = new HashSet<>();
+            for (ParseRule rule : rules.get(nt)) {
+                List<Node> rhs = rule.getRHS();
+                if (rhs.isEmpty()) {
+                    continue;
+                }
+                Node lastRhs = rhs.get(rhs.size() - 1);
+                if (lastRhs instanceof NonTerminal) {
+                    ends.add((NonTerminal) lastRhs);
+                }
+                addFollowFromFirst(rhs, first, follow);
+            }
+            endsIn.put(nt, ends);
+        }
+
+        List<List<NonTerminal>> components = StronglyConnectedComponents.compute(nonTerminals, endsIn::get);
+        Collections.reverse(components);
+        for (List<NonTerminal> component : components) {
+            Set<NonTerminal> members = new HashSet<>(component);
+            Deque<NonTerminal> worklist = new ArrayDeque<>(component);
+            Set<NonTerminal> queued = new HashSet<>(component);
+            while (!worklist.isEmpty()) {
+                NonTerminal nt = worklist.pop();
+                queued.remove(nt);
+                for (NonTerminal end : endsIn.get(nt)) {
+                    if (follow.get(end).addAll(follow.get(nt)) && members.contains(end) && queued.add(end)) {
+                        worklist.add(end);
+                    }
+                }
+            }
+        }
+        return follow;
+    }
+
+    /**
+     * Adds the FIRST sets of the nodes following each nonterminal in a right hand side to its FOLLOW set, in the same
+     * way as {@link NaiveFollowCalculator}.
+     * @param rhs right hand side of a rule
+     * @param first FIRST set of this LL(1) parser
+     * @param follow FOLLOW set to add to
+     */
+    private static void addFollowFromFirst(List<Node> rhs, Map<Node, CharSet> first, Map<Node, CharSet> follow) {
+        CharSet toAdd = new CharSet();
+        for (int i = rhs.size() - 1; i >= 1; i--) {
+            Node previous = rhs.get(i - 1);
+            if (!(previous instanceof NonTerminal)) {
+                toAdd = new CharSet();
+                continue;
+            }
+            Node current = rhs.get(i);
+            while (current instanceof BoundNode) {
+                current = ((BoundNode) current).getContent();
+            }
+            toAdd.addAll(first.get(current));
+            follow.get(previous).addAll(toAdd);
+            if (!first.get(previous).containsEpsilon()) {
+                toAdd = new CharSet();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package parselang.parser.rulealgorithms;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Splits a directed graph into strongly connected components with Tarjan's algorithm. The search is iterative, so long
+ * chains of nonterminals do not overflow the stack.
+ */
+final class StronglyConnectedComponents {
+
+    private StronglyConnectedComponents() {
+    }
+
+    /**
+     * Computes the strongly connected components of a graph.
+     * @param vertices all vertices of the graph
+     * @param successors returns the vertices a vertex has an edge to
+     * @param <T> type of vertices
+     * @return the components, each of which comes after all components reachable from it
+     */
+    static <T> List<List<T>> compute(Collection<T> vertices, Function<T, Collection<T>> successors) {
+        Map<T, Integer> index = new HashMap<>();
+        Map<T, Integer> lowLink = new HashMap<>();
+        Set<T> onStack = new HashSet<>();
+        Deque<T> stack = new ArrayDeque<>();
+        List<List<T>> res = new ArrayList<>();
+
+        Deque<T> callStack = new ArrayDeque<>();
+        Deque<Iterator<T>> iterators = new ArrayDeque<>();
+        for (T root : vertices) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+            visit(root, index, lowLink, onStack, stack, successors, callStack, iterators);
+            while (!callStack.isEmpty()) {
+                T vertex = callStack.peek();
+                Iterator<T> successorIt = iterators.peek();
+                if (successorIt.hasNext()) {
+                    T successor = successorIt.next();
+                    if (!index.containsKey(successor)) {
+                        visit(successor, index, lowLink, onStack, stack, successors, callStack, iterators);
+                    } else if (onStack.contains(successor)) {
+                        lowLink.put(vertex, Math.min(lowLink.get(vertex), index.get(successor)));
+                    }
+                    continue;
+                }
+                callStack.pop();
+                iterators.pop();
+                if (!callStack.isEmpty()) {
+                    T parent = callStack.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(vertex)));
+                }
+                if (lowLink.get(vertex).equals(index.get(vertex))) {
+                    List<T> component = new ArrayList<>();
+                    T member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(vertex));
+                    res.add(component);
+                }
+            }
+        }
+        return res;
+    }
+
+    private static <T> void visit(T vertex, Map<T, Integer> index, Map<T, Integer> lowLink, Set<T> onStack, Deque<T> stack, Function<T, Collection<T>> successors, Deque<T> callStack, Deque<Iterator<T>> iterators) {
+        index.put(vertex, index.size());
+        lowLink.put(vertex, index.get(vertex));
+        stack.push(vertex);
+        onStack.add(vertex);
+        callStack.push(vertex);
+        iterators.push(successors.apply(vertex).iterator());
+    }
+}
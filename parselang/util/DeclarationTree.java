@@ -27,7 +27,7 @@ public class DeclarationTree {
      */
     public DeclarationTree(AST declaration) {
         this.name = declaration.getChild(0).parseString();
-        this.direction = declaration.getChild(2).parseString().equals("<") ? Direction.LEFT : Direction.RIGHT;
+        this.direction = "<".contentEquals(declaration.getChild(2).getText()) ? Direction.LEFT : Direction.RIGHT;
         this.superNonTerminal = declaration.getChild(4).parseString();
         this.retrievedNodes = Collections.unmodifiableList(extractNodes(declaration.getChild(7)));
     }